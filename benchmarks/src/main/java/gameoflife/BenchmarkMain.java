@@ -0,0 +1,29 @@
+package gameoflife;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain
+{
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions command = new CommandLineOptions(args);
+        if(command.shouldHelp() || command.shouldList() || command.shouldListWithParams() || command.shouldListProfilers() || command.shouldListResultFormats())
+        {
+            Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(command);
+        if(!command.getResultFormat().hasValue())
+            options.resultFormat(ResultFormatType.JSON);
+        if(!command.getResult().hasValue())
+            options.result(DEFAULT_RESULT_FILE);
+        new Runner(options.build()).run();
+    }
+}
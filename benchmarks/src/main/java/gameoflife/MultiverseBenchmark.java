@@ -0,0 +1,58 @@
+package gameoflife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the time per universe-generation, so the score is directly comparable with SoupBenchmark at the same size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiverseBenchmark
+{
+    @Param({"32", "100", "256"})
+    public int size;
+
+    @Param({"0.30"})
+    public double density;
+
+    private MultiverseEngine multiverse;
+
+    @Setup(Level.Iteration)
+    public void seed()
+    {
+        multiverse = new MultiverseEngine(size, size);
+        multiverse.setParallelism(1);
+        Random random = new Random(42);
+        for(int lane = 0; lane < MultiverseEngine.LANES; lane++)
+            for(int y = 0; y < size; y++)
+                for(int x = 0; x < size; x++)
+                    if(random.nextDouble() < density)
+                        multiverse.setLiving(lane, x, y, true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MultiverseEngine.LANES)
+    public void step()
+    {
+        multiverse.step();
+    }
+}
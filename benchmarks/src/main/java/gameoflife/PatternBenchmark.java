@@ -0,0 +1,66 @@
+package gameoflife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternBenchmark
+{
+    @Param({"Blinker", "Glider", "Pond", "Half-Bakery", "Gosper Glider Gun", "Candelabra", "Beaconmaker", "Chemist"})
+    public String pattern;
+
+    @Param({"100", "1024", "8192"})
+    public int size;
+
+    @Param({"Byte", "Bitboard", "Sparse", "Chunked", "HashLife"})
+    public String engine;
+
+    private StepEngine grid;
+    private PatternLibrary.Pattern shape;
+
+    @Setup(Level.Trial)
+    public void create()
+    {
+        grid = StepEngines.create(engine);
+        grid.resize(size, size);
+        grid.setParallelism(1);
+        shape = PatternLibrary.builtIn().get(pattern);
+    }
+
+    @Setup(Level.Iteration)
+    public void place()
+    {
+        grid.clear();
+        shape.place(grid);
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose()
+    {
+        grid.dispose();
+    }
+
+    @Benchmark
+    public void step()
+    {
+        grid.step();
+    }
+}
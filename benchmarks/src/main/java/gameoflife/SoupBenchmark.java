@@ -0,0 +1,74 @@
+package gameoflife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class SoupBenchmark
+{
+    @Param({"100", "1024", "8192"})
+    public int size;
+
+    @Param({"0.05", "0.30", "0.50"})
+    public double density;
+
+    @Param({"Byte", "Bitboard", "Lookup Table", "Generations", "Off-Heap", "Vector"})
+    public String engine;
+
+    @Param({"1"})
+    public int threads;
+
+    private StepEngine grid;
+
+    @Setup(Level.Trial)
+    public void create()
+    {
+        grid = StepEngines.create(engine);
+        if(!grid.getName().equals(engine))
+            throw new IllegalStateException(engine + " engine is not available, " + grid.getName() + " was created instead (build with -Pvector)");
+        grid.resize(size, size);
+        grid.setParallelism(threads);
+    }
+
+    @Setup(Level.Iteration)
+    public void seed()
+    {
+        grid.clear();
+        Random random = new Random(42);
+        for(int y = 0; y < size; y++)
+            for(int x = 0; x < size; x++)
+                if(random.nextDouble() < density)
+                    grid.setLiving(x, y, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose()
+    {
+        grid.dispose();
+    }
+
+    @Benchmark
+    public void step()
+    {
+        grid.step();
+    }
+}
@@ -0,0 +1,116 @@
+package gameoflife;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+class VectorBitboardEngine extends BitboardEngine
+{
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.VECTOR;
+    }
+
+    @Override
+    public String getStatistics()
+    {
+        String tiles = super.getStatistics();
+        String validation = VectorSupport.getValidationReport();
+        if(tiles == null)
+            return validation;
+        return validation == null ? tiles : tiles + "\n" + validation;
+    }
+
+    /**
+     * Steps the row a vector of words at a time, then stores the active words one by one so that tile tracking and
+     * the universe's edge mask apply exactly as in the scalar kernel. Rules other than Conway's use the same
+     * bit-sliced counts as BitKernel.
+     */
+    @Override
+    void stepRow(long[] up, long[] mid, long[] down, long[] out, int tile)
+    {
+        int words = getWordsPerRow();
+        if(words < SPECIES.length() + 2)
+        {
+            super.stepRow(up, mid, down, out, tile);
+            return;
+        }
+        Rule rule = getRule();
+        boolean conway = rule.isConway();
+        long[] lanes = new long[SPECIES.length()];
+        int i = 1;
+        for(int bound = words + 1 - SPECIES.length(); i <= bound; i += SPECIES.length())
+        {
+            LongVector u = LongVector.fromArray(SPECIES, up, i);
+            LongVector m = LongVector.fromArray(SPECIES, mid, i);
+            LongVector d = LongVector.fromArray(SPECIES, down, i);
+            LongVector uW = west(u, up, i);
+            LongVector uE = east(u, up, i);
+            LongVector mW = west(m, mid, i);
+            LongVector mE = east(m, mid, i);
+            LongVector dW = west(d, down, i);
+            LongVector dE = east(d, down, i);
+
+            LongVector uOnes = uW.lanewise(XOR, u).lanewise(XOR, uE);
+            LongVector uTwos = uW.and(u).or(uE.and(uW.lanewise(XOR, u)));
+            LongVector mOnes = mW.lanewise(XOR, mE);
+            LongVector mTwos = mW.and(mE);
+            LongVector dOnes = dW.lanewise(XOR, d).lanewise(XOR, dE);
+            LongVector dTwos = dW.and(d).or(dE.and(dW.lanewise(XOR, d)));
+
+            LongVector ones = uOnes.lanewise(XOR, mOnes).lanewise(XOR, dOnes);
+            LongVector carry = uOnes.and(mOnes).or(dOnes.and(uOnes.lanewise(XOR, mOnes)));
+            LongVector p = uTwos.lanewise(XOR, mTwos);
+            LongVector q = uTwos.and(mTwos);
+            LongVector r = dTwos.lanewise(XOR, carry);
+            LongVector s = dTwos.and(carry);
+            LongVector twos = p.lanewise(XOR, r);
+            LongVector fours = q.lanewise(XOR, s).lanewise(XOR, p.and(r));
+            LongVector eights = q.and(s);
+
+            LongVector result = conway ? twos.and(fours.or(eights).not()).and(ones.or(m))
+                    : next(ones, twos, fours, eights, m, rule.getBirth(), rule.getSurvival());
+            result.intoArray(lanes, 0);
+            for(int lane = 0; lane < lanes.length; lane++)
+                if(isActive(tile, i + lane))
+                    storeWord(mid, out, tile, i + lane, lanes[lane]);
+        }
+        for(; i <= words; i++)
+            if(isActive(tile, i))
+                storeWord(mid, out, tile, i, stepWord(up, mid, down, i));
+    }
+
+    private static LongVector next(LongVector ones, LongVector twos, LongVector fours, LongVector eights, LongVector m, int birth, int survival)
+    {
+        LongVector born = LongVector.zero(SPECIES);
+        LongVector survives = LongVector.zero(SPECIES);
+        for(int n = 0, rules = birth | survival; rules != 0; n++, rules >>>= 1)
+        {
+            if((rules & 1) == 0)
+                continue;
+            LongVector count = ((n & 1) != 0 ? ones : ones.not()).and((n & 2) != 0 ? twos : twos.not())
+                    .and((n & 4) != 0 ? fours : fours.not()).and((n & 8) != 0 ? eights : eights.not());
+            if((birth & (1 << n)) != 0)
+                born = born.or(count);
+            if((survival & (1 << n)) != 0)
+                survives = survives.or(count);
+        }
+        return born.and(m.not()).or(survives.and(m));
+    }
+
+    private LongVector west(LongVector row, long[] words, int i)
+    {
+        return row.lanewise(LSHL, 1).or(LongVector.fromArray(SPECIES, words, i - 1).lanewise(LSHR, 63));
+    }
+
+    private LongVector east(LongVector row, long[] words, int i)
+    {
+        return row.lanewise(LSHR, 1).or(LongVector.fromArray(SPECIES, words, i + 1).lanewise(LSHL, 63));
+    }
+}
@@ -0,0 +1,206 @@
+package gameoflife;
+
+import java.io.File;
+import java.io.IOException;
+
+class BatchRunner
+{
+    private static final int AREA_SAMPLE_STEPS = 16;
+
+    private String engineName = StepEngines.BITBOARD;
+    private String pattern;
+    private File input;
+    private File output;
+    private long generations = 1000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int width;
+    private int height;
+    private Rule rule;
+    private Boundary boundary = Boundary.TORUS;
+    private int stepExponent = 0;
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        BatchRunner runner = new BatchRunner();
+        try
+        {
+            runner.parse(args);
+        } catch(IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+        try
+        {
+            runner.run();
+        } catch(IOException | RuntimeException e)
+        {
+            System.err.println("Batch run failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage()
+    {
+        System.err.println("Usage: java -cp <classes> gameoflife.BatchRunner [options]");
+        System.err.println("  --pattern <name>       start from a library pattern (e.g. \"Gosper Glider Gun\")");
+        System.err.println("  --load <file>          start from a saved universe");
+        System.err.println("  --generations <n>      generations to run (default 1000)");
+        System.err.println("  --engine <name>        one of " + String.join(", ", StepEngines.getNames()));
+        System.err.println("  --threads <n>          worker threads (default: available processors)");
+        System.err.println("  --size <w>x<h>         universe size (default: fits the pattern, at least 100x100)");
+        System.err.println("  --rule <rulestring>    e.g. B3/S23, B36/S23, /2/3 (default: the loaded universe's rule, or B3/S23)");
+        System.err.println("  --boundary <name>      torus, dead or klein");
+        System.err.println("  --step-exponent <k>    advance 2^k generations per step where supported");
+        System.err.println("  --out <file>           write the final universe");
+    }
+
+    private void parse(String[] args)
+    {
+        for(int i = 0; i < args.length; i++)
+        {
+            String option = args[i];
+            if(i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch(option)
+            {
+                case "--pattern":
+                    pattern = value;
+                    break;
+                case "--load":
+                    input = new File(value);
+                    break;
+                case "--out":
+                    output = new File(value);
+                    break;
+                case "--generations":
+                    generations = Long.parseLong(value);
+                    break;
+                case "--engine":
+                    engineName = value;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--size":
+                    String[] parts = value.toLowerCase().split("x");
+                    if(parts.length != 2)
+                        throw new IllegalArgumentException("Expected <w>x<h>: " + value);
+                    width = Integer.parseInt(parts[0]);
+                    height = Integer.parseInt(parts[1]);
+                    if(width < 1 || height < 1 || width > StepEngines.MAX_GRID_SIDE || height > StepEngines.MAX_GRID_SIDE)
+                        throw new IllegalArgumentException("Universe size must be between 1x1 and " + StepEngines.MAX_GRID_SIDE + "x" + StepEngines.MAX_GRID_SIDE);
+                    break;
+                case "--rule":
+                    rule = Rule.parse(value);
+                    break;
+                case "--boundary":
+                    boundary = parseBoundary(value);
+                    break;
+                case "--step-exponent":
+                    stepExponent = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if(pattern != null && input != null)
+            throw new IllegalArgumentException("Use either --pattern or --load, not both");
+    }
+
+    private static Boundary parseBoundary(String value)
+    {
+        switch(value.toLowerCase())
+        {
+            case "torus":
+                return Boundary.TORUS;
+            case "dead":
+                return Boundary.DEAD;
+            case "klein":
+                return Boundary.KLEIN;
+            default:
+                throw new IllegalArgumentException("Unknown boundary: " + value);
+        }
+    }
+
+    private void run() throws IOException
+    {
+        StepEngine grid = StepEngines.create(engineName);
+        PatternLibrary.Pattern shape = null;
+        UniverseFile universe = null;
+        long generation = 0;
+        if(input != null)
+        {
+            universe = UniverseFile.load(input);
+            generation = universe.getGeneration();
+            if(rule == null)
+                rule = universe.getRule();
+        } else if(pattern != null)
+        {
+            shape = PatternLibrary.create().get(pattern);
+            if(shape == null)
+                throw new IllegalArgumentException("Unknown pattern: " + pattern);
+        }
+        if(width == 0 && universe != null && universe.isBounded())
+        {
+            width = universe.getWidth();
+            height = universe.getHeight();
+        } else if(width == 0)
+        {
+            width = Math.max(100, universe != null ? universe.getWidth() : shape != null ? shape.getWidth() * 2 : 0);
+            height = Math.max(100, universe != null ? universe.getHeight() : shape != null ? shape.getHeight() * 2 : 0);
+        }
+        if(rule == null)
+            rule = Rule.CONWAY;
+        grid.resize(width, height);
+        grid.setParallelism(threads);
+        grid.setStepExponent(stepExponent);
+        if(!grid.supports(rule))
+            throw new IllegalArgumentException(grid.getName() + " engine does not support " + rule);
+        grid.setRule(rule);
+        if(!grid.supports(boundary))
+            throw new IllegalArgumentException(grid.getName() + " engine does not support a " + boundary + " boundary");
+        grid.setBoundary(boundary);
+        if(universe != null)
+            universe.placeInto(grid);
+        else if(shape != null)
+            shape.place(grid);
+
+        long stepSize = 1L << grid.getStepExponent();
+        long steps = (generations + stepSize - 1) / stepSize;
+        long cellUpdates = 0;
+        long nanos = 0;
+        System.out.println("Running " + steps * stepSize + " generations of " + width + "x" + height + " on " + grid.getName()
+                + " with " + grid.getParallelism() + " thread(s), rule " + grid.getRule());
+        for(long s = 0; s < steps; s++)
+        {
+            long start = System.nanoTime();
+            grid.step();
+            nanos += System.nanoTime() - start;
+            if(grid.isBounded())
+                cellUpdates += (long) width * height * stepSize;
+            else if(s % AREA_SAMPLE_STEPS == 0)
+            {
+                // Measuring an unbounded universe scans its cells, so the area is sampled for the next few steps
+                GenerationStats stats = grid.getGenerationStats(generation);
+                if(!stats.isEmpty())
+                    cellUpdates += (long) (stats.getMaxX() - stats.getMinX() + 3) * (stats.getMaxY() - stats.getMinY() + 3) * stepSize
+                            * Math.min(AREA_SAMPLE_STEPS, steps - s);
+            }
+            generation += stepSize;
+        }
+        double seconds = Math.max(nanos, 1) / 1e9;
+        GenerationStats stats = grid.getGenerationStats(generation);
+        System.out.println(stats);
+        System.out.printf("%.3f s, %.1f generations/s, %.3e cell updates/s%n", seconds, steps * stepSize / seconds, cellUpdates / seconds);
+        if(output != null)
+        {
+            UniverseFile.save(output, grid, generation);
+            System.out.println("Wrote " + output);
+        }
+        grid.dispose();
+    }
+}
@@ -0,0 +1,92 @@
+package gameoflife;
+
+class BitKernel
+{
+    private BitKernel() {}
+
+    public static void stepRow(long[] up, long[] mid, long[] down, long[] out, int width, Rule rule)
+    {
+        int words = (width + 63) >>> 6;
+        boolean conway = rule.isConway();
+        for(int i = 0; i < words; i++)
+        {
+            long uW = west(up, i, width), uE = east(up, i, width, words);
+            long mW = west(mid, i, width), mE = east(mid, i, width, words);
+            long dW = west(down, i, width), dE = east(down, i, width, words);
+            out[i] = conway ? next(uW, up[i], uE, mW, mid[i], mE, dW, down[i], dE)
+                    : next(uW, up[i], uE, mW, mid[i], mE, dW, down[i], dE, rule.getBirth(), rule.getSurvival());
+        }
+        if((width & 63) != 0)
+            out[words - 1] &= (1L << (width & 63)) - 1;
+    }
+
+    static long west(long[] row, int i, int width)
+    {
+        int x = i == 0 ? width - 1 : (i << 6) - 1;
+        return (row[i] << 1) | ((row[x >>> 6] >>> x) & 1L);
+    }
+
+    static long east(long[] row, int i, int width, int words)
+    {
+        if(i == words - 1)
+            return (row[i] >>> 1) | ((row[0] & 1L) << ((width - 1) & 63));
+        return (row[i] >>> 1) | ((row[i + 1] & 1L) << 63);
+    }
+
+    public static long next(long uW, long u, long uE, long mW, long m, long mE, long dW, long d, long dE)
+    {
+        long uOnes = uW ^ u ^ uE;
+        long uTwos = (uW & u) | (uE & (uW ^ u));
+        long mOnes = mW ^ mE;
+        long mTwos = mW & mE;
+        long dOnes = dW ^ d ^ dE;
+        long dTwos = (dW & d) | (dE & (dW ^ d));
+
+        long ones = uOnes ^ mOnes ^ dOnes;
+        long carry = (uOnes & mOnes) | (dOnes & (uOnes ^ mOnes));
+        long p = uTwos ^ mTwos;
+        long q = uTwos & mTwos;
+        long r = dTwos ^ carry;
+        long s = dTwos & carry;
+        long twos = p ^ r;
+        long fours = q ^ s ^ (p & r);
+        long eights = q & s;
+
+        return twos & ~fours & ~eights & (ones | m);
+    }
+
+    public static long next(long uW, long u, long uE, long mW, long m, long mE, long dW, long d, long dE, int birth, int survival)
+    {
+        long uOnes = uW ^ u ^ uE;
+        long uTwos = (uW & u) | (uE & (uW ^ u));
+        long mOnes = mW ^ mE;
+        long mTwos = mW & mE;
+        long dOnes = dW ^ d ^ dE;
+        long dTwos = (dW & d) | (dE & (dW ^ d));
+
+        long ones = uOnes ^ mOnes ^ dOnes;
+        long carry = (uOnes & mOnes) | (dOnes & (uOnes ^ mOnes));
+        long p = uTwos ^ mTwos;
+        long q = uTwos & mTwos;
+        long r = dTwos ^ carry;
+        long s = dTwos & carry;
+        long twos = p ^ r;
+        long fours = q ^ s ^ (p & r);
+        long eights = q & s;
+
+        long born = 0;
+        long survives = 0;
+        for(int n = 0, rules = birth | survival; rules != 0; n++, rules >>>= 1)
+        {
+            if((rules & 1) == 0)
+                continue;
+            long count = ((n & 1) != 0 ? ones : ~ones) & ((n & 2) != 0 ? twos : ~twos)
+                    & ((n & 4) != 0 ? fours : ~fours) & ((n & 8) != 0 ? eights : ~eights);
+            if((birth & (1 << n)) != 0)
+                born |= count;
+            if((survival & (1 << n)) != 0)
+                survives |= count;
+        }
+        return (born & ~m) | (survives & m);
+    }
+}
@@ -0,0 +1,573 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+class BitboardEngine implements StepEngine, RowKernel, TileTracking
+{
+    private static final int TILE_ROWS = 16;
+
+    private int width;
+    private int height;
+    private int words;
+    private long lastMask;
+    private long[] masks;
+    private long[] mirrored;
+    private long[][] rows;
+    private long[][] next;
+    private Boundary boundary = Boundary.TORUS;
+    private final StripeStepper stepper = new StripeStepper();
+    private int tileRows;
+    private boolean[] dirty;
+    private boolean[] changed;
+    private boolean[] active;
+    private boolean tileTracking = false;
+    private int tilesComputed;
+    private int tilesSkipped;
+    private Rule rule = Rule.CONWAY;
+    private boolean hashing = false;
+    private long stateHash;
+    private long[] rowHashes;
+    private long[] rowKeys;
+    private long[] columnKeys;
+    private boolean counting = false;
+    private int[] rowPopulation;
+    private int[] rowMinX;
+    private int[] rowMaxX;
+    private int[] rowBirths;
+    private int[] rowDeaths;
+    private boolean[] staleRows;
+    private long births;
+    private long deaths;
+
+    public BitboardEngine()
+    {
+        resize(0, 0);
+    }
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.BITBOARD;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+        masks = new long[words + 2];
+        Arrays.fill(masks, 1, words + 1, -1L);
+        masks[words] = lastMask;
+        mirrored = new long[words + 1];
+        rows = new long[height + 2][words + 2];
+        next = new long[height + 2][words + 2];
+        rowHashes = new long[height];
+        rowKeys = new long[height];
+        for(int y = 0; y < height; y++)
+            rowKeys[y] = Zobrist.key(-1, y);
+        columnKeys = new long[words + 2];
+        for(int i = 1; i <= words; i++)
+            columnKeys[i] = Zobrist.key(i, -1);
+        hashing = false;
+        counting = false;
+        rowPopulation = new int[height];
+        rowMinX = new int[height];
+        rowMaxX = new int[height];
+        rowBirths = new int[height];
+        rowDeaths = new int[height];
+        staleRows = new boolean[height];
+        tileRows = (height + TILE_ROWS - 1) / TILE_ROWS;
+        dirty = new boolean[tileRows * words];
+        changed = new boolean[tileRows * words];
+        active = new boolean[tileRows * words];
+        Arrays.fill(dirty, true);
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public void clear()
+    {
+        for(long[] row : rows)
+            Arrays.fill(row, 0L);
+        Arrays.fill(dirty, true);
+        hashing = false;
+        counting = false;
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        return (rows[y + 1][(x >>> 6) + 1] & (1L << x)) != 0;
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        long[] row = rows[y + 1];
+        int i = (x >>> 6) + 1;
+        long before = row[i];
+        if(living)
+            row[i] |= 1L << x;
+        else
+            row[i] &= ~(1L << x);
+        if(hashing)
+            stateHash += wordHash(row[i] & masks[i], i, y) - wordHash(before & masks[i], i, y);
+        if(counting && row[i] != before)
+        {
+            staleRows[y] = true;
+            if(living)
+                births++;
+            else
+                deaths++;
+        }
+        dirty[(y / TILE_ROWS) * words + (x >>> 6)] = true;
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+        Arrays.fill(dirty, true);
+    }
+
+    @Override
+    public Boundary getBoundary()
+    {
+        return boundary;
+    }
+
+    @Override
+    public void setBoundary(Boundary boundary)
+    {
+        this.boundary = boundary;
+        Arrays.fill(dirty, true);
+    }
+
+    @Override
+    public boolean supports(Boundary boundary)
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isTileTracking()
+    {
+        return tileTracking;
+    }
+
+    @Override
+    public void setTileTracking(boolean tileTracking)
+    {
+        this.tileTracking = tileTracking;
+        Arrays.fill(dirty, true);
+    }
+
+    @Override
+    public int getTilesComputed()
+    {
+        return tilesComputed;
+    }
+
+    @Override
+    public int getTilesSkipped()
+    {
+        return tilesSkipped;
+    }
+
+    @Override
+    public String getStatistics()
+    {
+        if(!tileTracking)
+            return null;
+        return "Tiles computed: " + tilesComputed + ", skipped: " + tilesSkipped;
+    }
+
+    public int getWordsPerRow()
+    {
+        return words;
+    }
+
+    @Override
+    public void readBitmap(long[] out)
+    {
+        for(int y = 0; y < height; y++)
+        {
+            System.arraycopy(rows[y + 1], 1, out, y * words, words);
+            out[y * words + words - 1] &= lastMask;
+        }
+    }
+
+    @Override
+    public void writeBitmap(long[] bits)
+    {
+        for(int y = 0; y < height; y++)
+        {
+            System.arraycopy(bits, y * words, rows[y + 1], 1, words);
+            rows[y + 1][words] &= lastMask;
+        }
+        Arrays.fill(dirty, true);
+        hashing = false;
+        counting = false;
+    }
+
+    @Override
+    public void readRow(int y, long[] row)
+    {
+        System.arraycopy(rows[y + 1], 1, row, 0, words);
+        row[words - 1] &= lastMask;
+    }
+
+    /**
+     * Copies a row in a word at a time, keeping the state hash, the birth and death counts and the dirty tiles up to
+     * date as setLiving does.
+     */
+    @Override
+    public void writeRow(int y, long[] row)
+    {
+        long[] target = rows[y + 1];
+        for(int i = 1; i <= words; i++)
+        {
+            long before = target[i];
+            long after = i == words ? row[i - 1] & lastMask : row[i - 1];
+            if(after == before)
+                continue;
+            target[i] = after;
+            if(hashing)
+                stateHash += wordHash(after & masks[i], i, y) - wordHash(before & masks[i], i, y);
+            if(counting)
+            {
+                staleRows[y] = true;
+                births += Long.bitCount(after & ~before);
+                deaths += Long.bitCount(before & ~after);
+            }
+            dirty[(y / TILE_ROWS) * words + i - 1] = true;
+        }
+    }
+
+    @Override
+    public boolean hasRowStorage()
+    {
+        return true;
+    }
+
+    @Override
+    public void forEachLiving(int minX, int minY, int maxX, int maxY, CellVisitor visitor)
+    {
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        maxX = Math.min(maxX, width - 1);
+        maxY = Math.min(maxY, height - 1);
+        if(minX > maxX)
+            return;
+        for(int y = minY; y <= maxY; y++)
+        {
+            long[] row = rows[y + 1];
+            for(int i = minX >>> 6; i <= maxX >>> 6; i++)
+            {
+                long word = row[i + 1];
+                while(word != 0)
+                {
+                    int x = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if(x >= minX && x <= maxX)
+                        visitor.visit(x, y);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getParallelism()
+    {
+        return stepper.getParallelism();
+    }
+
+    @Override
+    public void setParallelism(int parallelism)
+    {
+        stepper.setParallelism(parallelism);
+    }
+
+    @Override
+    public void step()
+    {
+        if(width == 0 || height == 0)
+            return;
+        fillHalo();
+        markActiveTiles();
+        Arrays.fill(changed, false);
+        stepper.run(height, this);
+        long[][] swap = rows;
+        rows = next;
+        next = swap;
+        if(hashing)
+            for(long rowHash : rowHashes)
+                stateHash += rowHash;
+        if(counting)
+        {
+            for(int y = 0; y < height; y++)
+            {
+                births += rowBirths[y];
+                deaths += rowDeaths[y];
+            }
+        }
+        boolean[] swapTiles = dirty;
+        dirty = changed;
+        changed = swapTiles;
+    }
+
+    private void fillHalo()
+    {
+        long[] top = rows[0];
+        long[] bottom = rows[height + 1];
+        switch(boundary)
+        {
+            case TORUS:
+                System.arraycopy(rows[height], 0, top, 0, words + 2);
+                System.arraycopy(rows[1], 0, bottom, 0, words + 2);
+                break;
+            case KLEIN:
+                mirror(rows[height], top);
+                mirror(rows[1], bottom);
+                break;
+            default:
+                Arrays.fill(top, 0L);
+                Arrays.fill(bottom, 0L);
+        }
+        long wrap = boundary == Boundary.DEAD ? 0L : 1L;
+        int lastWord = ((width - 1) >>> 6) + 1;
+        int haloWord = (width >>> 6) + 1;
+        for(long[] row : rows)
+        {
+            long first = row[1] & wrap;
+            long last = (row[lastWord] >>> (width - 1)) & wrap;
+            row[0] = last << 63;
+            row[haloWord] = (row[haloWord] & ~(1L << width)) | (first << width);
+        }
+    }
+
+    private void mirror(long[] row, long[] out)
+    {
+        for(int k = 0; k < words; k++)
+            mirrored[k] = Long.reverse(row[words - k] & masks[words - k]);
+        int shift = (words << 6) - width;
+        for(int j = 0; j < words; j++)
+            out[j + 1] = shift == 0 ? mirrored[j] : (mirrored[j] >>> shift) | (mirrored[j + 1] << (64 - shift));
+    }
+
+    private void markActiveTiles()
+    {
+        tilesComputed = 0;
+        for(int t = 0; t < active.length; t++)
+        {
+            active[t] = !tileTracking || isNearDirty(t / words, t % words);
+            if(active[t])
+                tilesComputed++;
+        }
+        tilesSkipped = active.length - tilesComputed;
+    }
+
+    private boolean isNearDirty(int tileRow, int tileColumn)
+    {
+        for(int dr = -1; dr <= 1; dr++)
+        {
+            int r = (tileRow + dr + tileRows) % tileRows;
+            if(boundary == Boundary.KLEIN && r != tileRow + dr)
+            {
+                for(int c = 0; c < words; c++)
+                    if(dirty[r * words + c])
+                        return true;
+                continue;
+            }
+            for(int dc = -1; dc <= 1; dc++)
+                if(dirty[r * words + (tileColumn + dc + words) % words])
+                    return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void stepRows(int from, int to)
+    {
+        for(int y = from; y < to; y++)
+        {
+            stepRow(rows[y], rows[y + 1], rows[y + 2], next[y + 1], (y / TILE_ROWS) * words - 1);
+            if(hashing || counting)
+                analyseRow(rows[y + 1], next[y + 1], y);
+        }
+    }
+
+    void stepRow(long[] up, long[] mid, long[] down, long[] out, int tile)
+    {
+        for(int i = 1; i <= words; i++)
+        {
+            if(active[tile + i])
+                storeWord(mid, out, tile, i, stepWord(up, mid, down, i));
+        }
+    }
+
+    /**
+     * Returns true if word i of a row in the given tile row must be stepped, which is always the case unless tile
+     * tracking is on.
+     */
+    boolean isActive(int tile, int i)
+    {
+        return active[tile + i];
+    }
+
+    /**
+     * Stores a stepped word masked to the universe, and notes whether its tile changed.
+     */
+    void storeWord(long[] mid, long[] out, int tile, int i, long word)
+    {
+        word &= masks[i];
+        if(word != (mid[i] & masks[i]))
+            changed[tile + i] = true;
+        out[i] = word;
+    }
+
+    long stepWord(long[] up, long[] mid, long[] down, int i)
+    {
+        long uW = west(up, i), uE = east(up, i), u = up[i];
+        long mW = west(mid, i), mE = east(mid, i), m = mid[i];
+        long dW = west(down, i), dE = east(down, i), d = down[i];
+
+        return rule.isConway() ? BitKernel.next(uW, u, uE, mW, m, mE, dW, d, dE)
+                : BitKernel.next(uW, u, uE, mW, m, mE, dW, d, dE, rule.getBirth(), rule.getSurvival());
+    }
+
+    /**
+     * Updates the row's hash and birth and death counts from the words that changed. The word past the last column
+     * can hold a halo bit left over from an earlier generation when its tile was skipped, so every word is masked.
+     */
+    private void analyseRow(long[] before, long[] after, int y)
+    {
+        rowHashes[y] = 0;
+        rowBirths[y] = 0;
+        rowDeaths[y] = 0;
+        int first = Arrays.mismatch(before, 1, words, after, 1, words);
+        if(first < 0 && ((before[words] ^ after[words]) & lastMask) == 0)
+            return;
+        if(hashing)
+        {
+            long hash = 0;
+            for(int i = first < 0 ? words : first + 1; i <= words; i++)
+                hash += wordHash(after[i] & masks[i], i, y) - wordHash(before[i] & masks[i], i, y);
+            rowHashes[y] = hash;
+        }
+        if(counting)
+        {
+            int born = 0, died = 0;
+            for(int i = first < 0 ? words : first + 1; i <= words; i++)
+            {
+                long old = before[i] & masks[i];
+                long now = after[i] & masks[i];
+                born += Long.bitCount(now & ~old);
+                died += Long.bitCount(old & ~now);
+            }
+            rowBirths[y] = born;
+            rowDeaths[y] = died;
+            countRow(after, y);
+        }
+    }
+
+    private void countRow(long[] row, int y)
+    {
+        int population = 0, minX = -1, maxX = -1;
+        for(int i = 1; i <= words; i++)
+        {
+            long word = row[i] & masks[i];
+            if(word == 0)
+                continue;
+            population += Long.bitCount(word);
+            if(minX < 0)
+                minX = ((i - 1) << 6) + Long.numberOfTrailingZeros(word);
+            maxX = ((i - 1) << 6) + 63 - Long.numberOfLeadingZeros(word);
+        }
+        rowPopulation[y] = population;
+        rowMinX[y] = minX;
+        rowMaxX[y] = maxX;
+        staleRows[y] = false;
+    }
+
+    @Override
+    public GenerationStats getGenerationStats(long generation)
+    {
+        boolean fresh = !counting;
+        if(fresh)
+        {
+            for(int y = 0; y < height; y++)
+                countRow(rows[y + 1], y);
+            counting = true;
+        }
+        long population = 0;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for(int y = 0; y < height; y++)
+        {
+            if(staleRows[y])
+                countRow(rows[y + 1], y);
+            if(rowPopulation[y] == 0)
+                continue;
+            population += rowPopulation[y];
+            minX = Math.min(minX, rowMinX[y]);
+            maxX = Math.max(maxX, rowMaxX[y]);
+            minY = Math.min(minY, y);
+            maxY = y;
+        }
+        GenerationStats stats = new GenerationStats(generation, population, minX, minY, maxX, maxY, fresh ? -1 : births, fresh ? -1 : deaths, getStateHash());
+        births = 0;
+        deaths = 0;
+        return stats;
+    }
+
+    private long wordHash(long word, int i, int y)
+    {
+        long z = (word ^ rowKeys[y] ^ columnKeys[i]) * 0x9E3779B97F4A7C15L;
+        return z ^ (z >>> 29);
+    }
+
+    @Override
+    public long getStateHash()
+    {
+        if(!hashing)
+        {
+            stateHash = 0;
+            for(int y = 0; y < height; y++)
+                for(int i = 1; i <= words; i++)
+                    stateHash += wordHash(rows[y + 1][i] & masks[i], i, y);
+            hashing = true;
+        }
+        return stateHash;
+    }
+
+    long west(long[] row, int i)
+    {
+        return (row[i] << 1) | (row[i - 1] >>> 63);
+    }
+
+    long east(long[] row, int i)
+    {
+        return (row[i] >>> 1) | (row[i + 1] << 63);
+    }
+}
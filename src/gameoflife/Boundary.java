@@ -0,0 +1,29 @@
+package gameoflife;
+
+enum Boundary
+{
+    TORUS("Torus"),
+    DEAD("Dead Border"),
+    KLEIN("Klein Bottle");
+
+    private final String text;
+
+    Boundary(String text)
+    {
+        this.text = text;
+    }
+
+    public static Boundary fromText(String text)
+    {
+        for(Boundary boundary : values())
+            if(boundary.text.equals(text))
+                return boundary;
+        throw new IllegalArgumentException("Unknown boundary: " + text);
+    }
+
+    @Override
+    public String toString()
+    {
+        return text;
+    }
+}
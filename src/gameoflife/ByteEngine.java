@@ -0,0 +1,146 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+class ByteEngine implements StepEngine, RowKernel
+{
+    private int width;
+    private int height;
+    private byte[] cells;
+    private byte[] next;
+    private Rule rule = Rule.CONWAY;
+    private byte[] table = rule.twoStateTable();
+    private final StripeStepper stepper = new StripeStepper();
+
+    public ByteEngine()
+    {
+        resize(0, 0);
+    }
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.BYTE;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        cells = new byte[width * height];
+        next = new byte[width * height];
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(cells, (byte) 0);
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        return cells[y * width + x] != 0;
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        cells[y * width + x] = (byte) (living ? 1 : 0);
+    }
+
+    @Override
+    public void readRow(int y, long[] row)
+    {
+        Arrays.fill(row, 0, (width + 63) >>> 6, 0L);
+        for(int x = 0, i = y * width; x < width; x++, i++)
+            row[x >>> 6] |= (long) cells[i] << x;
+    }
+
+    @Override
+    public void writeRow(int y, long[] row)
+    {
+        for(int x = 0, i = y * width; x < width; x++, i++)
+            cells[i] = (byte) ((row[x >>> 6] >>> x) & 1);
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+        table = rule.twoStateTable();
+    }
+
+    @Override
+    public int getParallelism()
+    {
+        return stepper.getParallelism();
+    }
+
+    @Override
+    public void setParallelism(int parallelism)
+    {
+        stepper.setParallelism(parallelism);
+    }
+
+    @Override
+    public void step()
+    {
+        if(width == 0 || height == 0)
+            return;
+        stepper.run(height, this);
+        byte[] swap = cells;
+        cells = next;
+        next = swap;
+    }
+
+    @Override
+    public void stepRows(int from, int to)
+    {
+        for(int y = from; y < to; y++)
+        {
+            int up = (y == 0 ? height - 1 : y - 1) * width;
+            int mid = y * width;
+            int down = (y == height - 1 ? 0 : y + 1) * width;
+            if(width == 1)
+            {
+                stepCell(up, mid, down, 0, 0, 0);
+                continue;
+            }
+            stepCell(up, mid, down, width - 1, 0, 1);
+            for(int x = 1; x < width - 1; x++)
+                stepCell(up, mid, down, x - 1, x, x + 1);
+            stepCell(up, mid, down, width - 2, width - 1, 0);
+        }
+    }
+
+    private void stepCell(int up, int mid, int down, int left, int x, int right)
+    {
+        byte[] c = cells;
+        int sum = c[up + left] + c[up + x] + c[up + right]
+                + c[mid + left] + c[mid + right]
+                + c[down + left] + c[down + x] + c[down + right];
+        next[mid + x] = table[(c[mid + x] << 4) | sum];
+    }
+}
@@ -0,0 +1,6 @@
+package gameoflife;
+
+interface CellVisitor
+{
+    void visit(int x, int y);
+}
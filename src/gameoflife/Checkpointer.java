@@ -0,0 +1,591 @@
+package gameoflife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Crash recovery for long runs. A checkpoint copies the grid on the caller's thread, as a quadtree for HashLife and
+ * otherwise as an off-heap bitmap or a list of cells, and a background thread writes the copy to checkpoint.bin
+ * through a temporary file and an atomic rename. Every checkpoint opens a new append-only journal that records edits
+ * and generation markers until the next one. After a crash, the newest complete checkpoint is loaded and its journal,
+ * plus any newer journal whose checkpoint never finished, is replayed on top by re-running the recorded generations.
+ */
+class Checkpointer
+{
+    public static final Path DEFAULT_DIRECTORY = Path.of("recovery");
+    public static final long DEFAULT_INTERVAL_SECONDS = 30;
+
+    private static final int CHECKPOINT_MAGIC = 0x474F4C43;
+    private static final int JOURNAL_MAGIC = 0x474F4C4A;
+    private static final int VERSION = 2;
+    private static final String CHECKPOINT = "checkpoint.bin";
+    private static final byte EDIT = 'E';
+    private static final byte GENERATION = 'G';
+    private static final byte BITMAP = 0;
+    private static final byte CELLS = 1;
+    private static final byte MACROCELL = 2;
+
+    private final Path directory;
+    private final long intervalNanos;
+    private final ScheduledExecutorService writer;
+    private DataOutputStream journal;
+    private long sequence;
+    private long nextCheckpoint;
+
+    public Checkpointer(Path directory, long intervalSeconds)
+    {
+        this.directory = directory;
+        intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "checkpoint-writer");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        writer.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                flushJournal();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        Session session = Session.find(directory);
+        sequence = session != null ? session.lastSequence : 0;
+    }
+
+    /**
+     * Takes a checkpoint now and starts a new journal. Called after every change that a journal cannot express, such
+     * as a new rule, size or engine, as well as periodically while the simulation runs.
+     */
+    public void checkpoint(StepEngine grid, long generation)
+    {
+        checkpoint(grid, generation, false);
+    }
+
+    /**
+     * A continuous checkpoint is taken while the grid simply runs on, so the previous journal still leads up to it
+     * and can be replayed in its place if the checkpoint is never completed.
+     */
+    private synchronized void checkpoint(StepEngine grid, long generation, boolean continuous)
+    {
+        Snapshot snapshot = new Snapshot(grid, generation);
+        long checkpointSequence = ++sequence;
+        try
+        {
+            Files.createDirectories(directory);
+            if(journal != null)
+                journal.close();
+            journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalFile(directory, checkpointSequence))));
+            journal.writeInt(JOURNAL_MAGIC);
+            journal.writeLong(checkpointSequence);
+            journal.writeBoolean(continuous);
+        } catch(IOException e)
+        {
+            System.err.println("Could not start journal: " + e);
+            journal = null;
+        }
+        nextCheckpoint = System.nanoTime() + intervalNanos;
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    write(snapshot, checkpointSequence);
+                } catch(IOException e)
+                {
+                    System.err.println("Checkpoint of generation " + snapshot.generation + " failed: " + e);
+                } finally
+                {
+                    snapshot.release();
+                }
+            }
+        });
+    }
+
+    public synchronized void recordEdit(int x, int y, boolean living)
+    {
+        if(journal == null)
+            return;
+        try
+        {
+            journal.writeByte(EDIT);
+            journal.writeInt(x);
+            journal.writeInt(y);
+            journal.writeBoolean(living);
+        } catch(IOException e)
+        {
+            System.err.println("Journal write failed: " + e);
+            journal = null;
+        }
+    }
+
+    /**
+     * Records that the grid has been stepped to the given generation, and takes a checkpoint once the interval has
+     * passed.
+     */
+    public synchronized void recordGeneration(StepEngine grid, long generation)
+    {
+        if(journal != null)
+        {
+            try
+            {
+                journal.writeByte(GENERATION);
+                journal.writeLong(generation);
+                journal.writeByte(grid.getStepExponent());
+            } catch(IOException e)
+            {
+                System.err.println("Journal write failed: " + e);
+                journal = null;
+            }
+        }
+        if(System.nanoTime() - nextCheckpoint >= 0)
+            checkpoint(grid, generation, true);
+    }
+
+    private synchronized void flushJournal()
+    {
+        try
+        {
+            if(journal != null)
+                journal.flush();
+        } catch(IOException e)
+        {
+            System.err.println("Journal flush failed: " + e);
+            journal = null;
+        }
+    }
+
+    /**
+     * Stops writing and deletes the recovery files, for a clean exit.
+     */
+    public void discard()
+    {
+        synchronized(this)
+        {
+            try
+            {
+                if(journal != null)
+                    journal.close();
+            } catch(IOException ignored) {}
+            journal = null;
+        }
+        writer.shutdown();
+        try
+        {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+            deleteAll(directory);
+        } catch(InterruptedException | IOException e)
+        {
+            System.err.println("Could not remove recovery files: " + e);
+        }
+    }
+
+    private void write(Snapshot snapshot, long checkpointSequence) throws IOException
+    {
+        Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+        try(FileOutputStream file = new FileOutputStream(temporary.toFile()))
+        {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(new BufferedOutputStream(file));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(deflated));
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(checkpointSequence);
+            out.writeLong(snapshot.generation);
+            out.writeUTF(snapshot.engine);
+            out.writeUTF(snapshot.rule.toString());
+            out.writeUTF(snapshot.boundary.name());
+            out.writeInt(snapshot.width);
+            out.writeInt(snapshot.height);
+            snapshot.writeTo(out);
+            out.flush();
+            deflated.finish();
+            deflated.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try(DirectoryStream<Path> journals = Files.newDirectoryStream(directory, "journal-*.log"))
+        {
+            for(Path journalFile : journals)
+                if(journalSequence(journalFile) < checkpointSequence)
+                    Files.deleteIfExists(journalFile);
+        }
+    }
+
+    private static Path journalFile(Path directory, long sequence)
+    {
+        return directory.resolve("journal-" + sequence + ".log");
+    }
+
+    private static long journalSequence(Path journal)
+    {
+        String name = journal.getFileName().toString();
+        try
+        {
+            return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+        } catch(NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    private static void deleteAll(Path directory) throws IOException
+    {
+        if(!Files.isDirectory(directory))
+            return;
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory))
+        {
+            for(Path file : files)
+                Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * An immutable copy of the grid and the settings needed to rebuild it. HashLife universes are copied as their
+     * Macrocell quadtree, so a universe of any extent costs only its distinct nodes. Bounded universes are copied a
+     * row at a time into off-heap memory that is freed once the checkpoint is written. Other unbounded universes are
+     * copied as a list of their living cells.
+     */
+    private static class Snapshot
+    {
+        final long generation;
+        final String engine;
+        final Rule rule;
+        final Boundary boundary;
+        final int width;
+        final int height;
+        final byte format;
+        private Macrocell macrocell;
+        private OffHeapArena arena;
+        private OffHeapGrid rows;
+        private long[] cells;
+        private int cellCount;
+
+        Snapshot(StepEngine grid, long generation)
+        {
+            this.generation = generation;
+            engine = grid.getName();
+            rule = grid.getRule();
+            boundary = grid.getBoundary();
+            width = grid.getWidth();
+            height = grid.getHeight();
+            if(grid instanceof HashLifeEngine)
+            {
+                format = MACROCELL;
+                macrocell = ((HashLifeEngine) grid).toMacrocell(generation);
+            } else if(grid.isBounded())
+            {
+                format = BITMAP;
+                int words = (width + 63) >>> 6;
+                arena = new OffHeapArena();
+                rows = new OffHeapGrid(arena, words, height);
+                long[] row = new long[words];
+                for(int y = 0; words > 0 && y < height; y++)
+                {
+                    grid.readRow(y, row);
+                    rows.writeRow(y, row);
+                }
+            } else
+            {
+                format = CELLS;
+                cells = new long[1024];
+                grid.forEachLiving(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, new CellVisitor()
+                {
+                    @Override
+                    public void visit(int x, int y)
+                    {
+                        if(cellCount == cells.length)
+                            cells = Arrays.copyOf(cells, cellCount * 2);
+                        cells[cellCount++] = LongHashSet.pack(x, y);
+                    }
+                });
+            }
+        }
+
+        void writeTo(DataOutputStream out) throws IOException
+        {
+            out.writeByte(format);
+            if(format == MACROCELL)
+            {
+                Writer text = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                macrocell.write(text);
+                text.flush();
+            } else if(format == BITMAP)
+            {
+                int words = (width + 63) >>> 6;
+                long[] row = new long[words];
+                for(int y = 0; words > 0 && y < height; y++)
+                {
+                    rows.readRow(y, row);
+                    for(long word : row)
+                        out.writeLong(word);
+                }
+            } else
+            {
+                out.writeInt(cellCount);
+                for(int i = 0; i < cellCount; i++)
+                    out.writeLong(cells[i]);
+            }
+        }
+
+        /**
+         * Frees the copy, at once for off-heap memory.
+         */
+        void release()
+        {
+            if(arena != null)
+                arena.close();
+            arena = null;
+            rows = null;
+            macrocell = null;
+            cells = null;
+        }
+    }
+
+    /**
+     * The state left behind by a session that did not exit cleanly.
+     */
+    public static class Session
+    {
+        private final Path directory;
+        private final long checkpointSequence;
+        private final long lastSequence;
+        private final long generation;
+        private final String engine;
+        private final Rule rule;
+        private final Boundary boundary;
+        private final int width;
+        private final int height;
+
+        private Session(Path directory, long checkpointSequence, long lastSequence, long generation, String engine, Rule rule, Boundary boundary, int width, int height)
+        {
+            this.directory = directory;
+            this.checkpointSequence = checkpointSequence;
+            this.lastSequence = lastSequence;
+            this.generation = generation;
+            this.engine = engine;
+            this.rule = rule;
+            this.boundary = boundary;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Returns the recoverable session in the directory, or null if there is none.
+         */
+        public static Session find(Path directory)
+        {
+            Path checkpoint = directory.resolve(CHECKPOINT);
+            if(!Files.isRegularFile(checkpoint))
+                return null;
+            try(DataInputStream in = openCheckpoint(checkpoint))
+            {
+                long checkpointSequence = in.readLong();
+                long generation = in.readLong();
+                String engine = in.readUTF();
+                Rule rule = Rule.parse(in.readUTF());
+                Boundary boundary = Boundary.valueOf(in.readUTF());
+                int width = in.readInt();
+                int height = in.readInt();
+                long lastSequence = checkpointSequence;
+                for(Path journal : journals(directory, checkpointSequence))
+                    lastSequence = Math.max(lastSequence, journalSequence(journal));
+                return new Session(directory, checkpointSequence, lastSequence, generation, engine, rule, boundary, width, height);
+            } catch(IOException | RuntimeException e)
+            {
+                System.err.println("Ignoring unreadable checkpoint: " + e);
+                return null;
+            }
+        }
+
+        private static DataInputStream openCheckpoint(Path checkpoint) throws IOException
+        {
+            InputStream file = Files.newInputStream(checkpoint);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(file)));
+            if(in.readInt() != CHECKPOINT_MAGIC || in.readInt() != VERSION)
+            {
+                in.close();
+                throw new IOException("Not a checkpoint file: " + checkpoint);
+            }
+            return in;
+        }
+
+        private static List<Path> journals(Path directory, long fromSequence) throws IOException
+        {
+            List<Path> result = new ArrayList<>();
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log"))
+            {
+                for(Path journal : files)
+                    if(journalSequence(journal) >= fromSequence)
+                        result.add(journal);
+            }
+            Collections.sort(result, new java.util.Comparator<Path>()
+            {
+                @Override
+                public int compare(Path a, Path b)
+                {
+                    return Long.compare(journalSequence(a), journalSequence(b));
+                }
+            });
+            return result;
+        }
+
+        public long getCheckpointGeneration()
+        {
+            return generation;
+        }
+
+        public String getEngine()
+        {
+            return engine;
+        }
+
+        public Rule getRule()
+        {
+            return rule;
+        }
+
+        public Boundary getBoundary()
+        {
+            return boundary;
+        }
+
+        public int getWidth()
+        {
+            return width;
+        }
+
+        public int getHeight()
+        {
+            return height;
+        }
+
+        /**
+         * Loads the checkpoint into a grid that has already been given this session's engine, rule, boundary and size,
+         * replays the journals and returns the generation reached. A journal that ends in a partial record, as the
+         * last one usually does after a crash, is replayed up to that record.
+         */
+        public long restore(StepEngine grid) throws IOException
+        {
+            long current;
+            try(DataInputStream in = openCheckpoint(directory.resolve(CHECKPOINT)))
+            {
+                in.readLong();
+                current = in.readLong();
+                in.readUTF();
+                in.readUTF();
+                in.readUTF();
+                int width = in.readInt();
+                int height = in.readInt();
+                byte format = in.readByte();
+                if(format == MACROCELL)
+                {
+                    if(!(grid instanceof HashLifeEngine))
+                        throw new IOException("A HashLife checkpoint cannot be loaded into a " + grid.getName() + " universe");
+                    ((HashLifeEngine) grid).load(Macrocell.read(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))));
+                } else if(format == BITMAP)
+                {
+                    int words = (width + 63) >>> 6;
+                    long[] row = new long[words];
+                    for(int y = 0; words > 0 && y < height; y++)
+                    {
+                        for(int i = 0; i < words; i++)
+                            row[i] = in.readLong();
+                        grid.writeRow(y, row);
+                    }
+                } else if(format == CELLS)
+                {
+                    grid.clear();
+                    int count = in.readInt();
+                    for(int i = 0; i < count; i++)
+                    {
+                        long cell = in.readLong();
+                        grid.setLiving(LongHashSet.unpackX(cell), LongHashSet.unpackY(cell), true);
+                    }
+                } else
+                    throw new IOException("Unknown checkpoint format " + format);
+            }
+            for(Path journal : journals(directory, checkpointSequence))
+            {
+                long replayed = replay(journal, grid, current);
+                if(replayed < 0)
+                    break;
+                current = replayed;
+            }
+            return current;
+        }
+
+        /**
+         * Applies one journal and returns the generation reached, or -1 if the journal starts from a checkpoint that
+         * was never completed after a change the journals cannot express, in which case the replay stops before it.
+         */
+        private long replay(Path journal, StepEngine grid, long current) throws IOException
+        {
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal))))
+            {
+                if(in.readInt() != JOURNAL_MAGIC)
+                    throw new IOException("Not a journal file: " + journal);
+                long sequence = in.readLong();
+                boolean continuous = in.readBoolean();
+                if(sequence != checkpointSequence && !continuous)
+                    return -1;
+                while(true)
+                {
+                    byte type = in.readByte();
+                    if(type == EDIT)
+                    {
+                        int x = in.readInt();
+                        int y = in.readInt();
+                        grid.setLiving(x, y, in.readBoolean());
+                    } else if(type == GENERATION)
+                    {
+                        long target = in.readLong();
+                        grid.setStepExponent(in.readByte());
+                        while(current < target)
+                        {
+                            grid.step();
+                            current += 1L << grid.getStepExponent();
+                        }
+                    } else
+                        throw new IOException("Corrupt journal record in " + journal);
+                }
+            } catch(EOFException e)
+            {
+                return current;
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package gameoflife;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class ChunkedEngine implements StepEngine
+{
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final LongObjectMap<Chunk> chunks = new LongObjectMap<>(64);
+    private final ArrayList<Chunk> active = new ArrayList<>();
+    private final ArrayDeque<Chunk> pool = new ArrayDeque<>();
+    private final ArrayList<Chunk> created = new ArrayList<>();
+    private final LongHashSet createdKeys = new LongHashSet();
+    private int width;
+    private int height;
+    private int evictionDelay = 8;
+    private long chunksAllocated = 0;
+    private Rule rule = Rule.CONWAY;
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.CHUNKED;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        clear();
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public boolean isBounded()
+    {
+        return false;
+    }
+
+    @Override
+    public void clear()
+    {
+        for(int i = 0; i < active.size(); i++)
+            release(active.get(i));
+        active.clear();
+        chunks.clear();
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+    }
+
+    public int getEvictionDelay()
+    {
+        return evictionDelay;
+    }
+
+    public void setEvictionDelay(int evictionDelay)
+    {
+        this.evictionDelay = Math.max(1, evictionDelay);
+    }
+
+    public int getChunkCount()
+    {
+        return chunks.size();
+    }
+
+    public int getPoolSize()
+    {
+        return pool.size();
+    }
+
+    public long getChunksAllocated()
+    {
+        return chunksAllocated;
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        Chunk chunk = chunks.get(LongHashSet.pack(x >> CHUNK_BITS, y >> CHUNK_BITS));
+        return chunk != null && (chunk.rows[y & (CHUNK_SIZE - 1)] & (1L << x)) != 0;
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        int cx = x >> CHUNK_BITS;
+        int cy = y >> CHUNK_BITS;
+        Chunk chunk = chunks.get(LongHashSet.pack(cx, cy));
+        if(chunk == null)
+        {
+            if(!living)
+                return;
+            chunk = acquire(cx, cy);
+            chunks.put(LongHashSet.pack(cx, cy), chunk);
+            active.add(chunk);
+        }
+        if(living)
+            chunk.rows[y & (CHUNK_SIZE - 1)] |= 1L << x;
+        else
+            chunk.rows[y & (CHUNK_SIZE - 1)] &= ~(1L << x);
+    }
+
+    @Override
+    public void step()
+    {
+        created.clear();
+        createdKeys.clear();
+        int count = active.size();
+        for(int i = 0; i < count; i++)
+            growBorders(active.get(i));
+        for(int i = 0; i < created.size(); i++)
+        {
+            Chunk chunk = created.get(i);
+            chunks.put(LongHashSet.pack(chunk.cx, chunk.cy), chunk);
+            active.add(chunk);
+        }
+        count = active.size();
+        for(int i = 0; i < count; i++)
+            stepChunk(active.get(i));
+        int kept = 0;
+        for(int i = 0; i < count; i++)
+        {
+            Chunk chunk = active.get(i);
+            long[] swap = chunk.rows;
+            chunk.rows = chunk.next;
+            chunk.next = swap;
+            if(chunk.isEmpty())
+                chunk.emptyGenerations++;
+            else
+                chunk.emptyGenerations = 0;
+            if(chunk.emptyGenerations >= evictionDelay)
+            {
+                chunks.remove(LongHashSet.pack(chunk.cx, chunk.cy));
+                release(chunk);
+            } else
+                active.set(kept++, chunk);
+        }
+        for(int i = count - 1; i >= kept; i--)
+            active.remove(i);
+    }
+
+    @Override
+    public void forEachLiving(int minX, int minY, int maxX, int maxY, CellVisitor visitor)
+    {
+        for(int i = 0; i < active.size(); i++)
+        {
+            Chunk chunk = active.get(i);
+            long originX = (long) chunk.cx << CHUNK_BITS;
+            long originY = (long) chunk.cy << CHUNK_BITS;
+            if(originX > maxX || originY > maxY || originX + CHUNK_SIZE <= minX || originY + CHUNK_SIZE <= minY)
+                continue;
+            for(int r = 0; r < CHUNK_SIZE; r++)
+            {
+                long word = chunk.rows[r];
+                long y = originY + r;
+                if(y < minY || y > maxY)
+                    continue;
+                while(word != 0)
+                {
+                    long x = originX + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if(x >= minX && x <= maxX)
+                        visitor.visit((int) x, (int) y);
+                }
+            }
+        }
+    }
+
+    private void growBorders(Chunk chunk)
+    {
+        long columns = 0;
+        for(long row : chunk.rows)
+            columns |= row;
+        boolean north = chunk.rows[0] != 0;
+        boolean south = chunk.rows[CHUNK_SIZE - 1] != 0;
+        boolean west = (columns & 1L) != 0;
+        boolean east = (columns >>> 63) != 0;
+        if(north)
+            ensure(chunk.cx, chunk.cy - 1);
+        if(south)
+            ensure(chunk.cx, chunk.cy + 1);
+        if(west)
+            ensure(chunk.cx - 1, chunk.cy);
+        if(east)
+            ensure(chunk.cx + 1, chunk.cy);
+        if((chunk.rows[0] & 1L) != 0)
+            ensure(chunk.cx - 1, chunk.cy - 1);
+        if((chunk.rows[0] >>> 63) != 0)
+            ensure(chunk.cx + 1, chunk.cy - 1);
+        if((chunk.rows[CHUNK_SIZE - 1] & 1L) != 0)
+            ensure(chunk.cx - 1, chunk.cy + 1);
+        if((chunk.rows[CHUNK_SIZE - 1] >>> 63) != 0)
+            ensure(chunk.cx + 1, chunk.cy + 1);
+    }
+
+    private void ensure(int cx, int cy)
+    {
+        long key = LongHashSet.pack(cx, cy);
+        if(!chunks.containsKey(key) && createdKeys.add(key))
+            created.add(acquire(cx, cy));
+    }
+
+    private void stepChunk(Chunk chunk)
+    {
+        Chunk n = neighbour(chunk, 0, -1);
+        Chunk s = neighbour(chunk, 0, 1);
+        Chunk w = neighbour(chunk, -1, 0);
+        Chunk e = neighbour(chunk, 1, 0);
+        Chunk nw = neighbour(chunk, -1, -1);
+        Chunk ne = neighbour(chunk, 1, -1);
+        Chunk sw = neighbour(chunk, -1, 1);
+        Chunk se = neighbour(chunk, 1, 1);
+        long[] rows = chunk.rows;
+        for(int r = 0; r < CHUNK_SIZE; r++)
+        {
+            long u, uWest, uEast, d, dWest, dEast;
+            if(r == 0)
+            {
+                u = row(n, CHUNK_SIZE - 1);
+                uWest = row(nw, CHUNK_SIZE - 1);
+                uEast = row(ne, CHUNK_SIZE - 1);
+            } else
+            {
+                u = rows[r - 1];
+                uWest = row(w, r - 1);
+                uEast = row(e, r - 1);
+            }
+            if(r == CHUNK_SIZE - 1)
+            {
+                d = row(s, 0);
+                dWest = row(sw, 0);
+                dEast = row(se, 0);
+            } else
+            {
+                d = rows[r + 1];
+                dWest = row(w, r + 1);
+                dEast = row(e, r + 1);
+            }
+            long m = rows[r];
+            long mWest = row(w, r);
+            long mEast = row(e, r);
+            long uW = (u << 1) | (uWest >>> 63), uE = (u >>> 1) | (uEast << 63);
+            long mW = (m << 1) | (mWest >>> 63), mE = (m >>> 1) | (mEast << 63);
+            long dW = (d << 1) | (dWest >>> 63), dE = (d >>> 1) | (dEast << 63);
+            chunk.next[r] = rule.isConway() ? BitKernel.next(uW, u, uE, mW, m, mE, dW, d, dE)
+                    : BitKernel.next(uW, u, uE, mW, m, mE, dW, d, dE, rule.getBirth(), rule.getSurvival());
+        }
+    }
+
+    private Chunk neighbour(Chunk chunk, int dx, int dy)
+    {
+        return chunks.get(LongHashSet.pack(chunk.cx + dx, chunk.cy + dy));
+    }
+
+    private long row(Chunk chunk, int r)
+    {
+        return chunk == null ? 0L : chunk.rows[r];
+    }
+
+    private Chunk acquire(int cx, int cy)
+    {
+        Chunk chunk = pool.poll();
+        if(chunk == null)
+        {
+            chunk = new Chunk();
+            chunksAllocated++;
+        }
+        chunk.cx = cx;
+        chunk.cy = cy;
+        chunk.emptyGenerations = 0;
+        return chunk;
+    }
+
+    private void release(Chunk chunk)
+    {
+        Arrays.fill(chunk.rows, 0L);
+        Arrays.fill(chunk.next, 0L);
+        pool.push(chunk);
+    }
+
+    private static class Chunk
+    {
+        long[] rows = new long[CHUNK_SIZE];
+        long[] next = new long[CHUNK_SIZE];
+        int cx;
+        int cy;
+        int emptyGenerations;
+
+        boolean isEmpty()
+        {
+            for(long row : rows)
+                if(row != 0)
+                    return false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+class CycleDetector
+{
+    public static final int MAX_PERIOD = 64;
+
+    private final long[] hashes = new long[MAX_PERIOD];
+    private final long[] generations = new long[MAX_PERIOD];
+    private long recorded;
+    private int period;
+    private long since;
+    private int confirming;
+    private LongHashSet startCells;
+    private LongHashSet phaseCells;
+    private long[][] toggles;
+    private int phase;
+    private boolean stable;
+
+    public void reset()
+    {
+        recorded = 0;
+        stable = false;
+        abandon();
+    }
+
+    public boolean isStable()
+    {
+        return stable;
+    }
+
+    public int getPeriod()
+    {
+        return period;
+    }
+
+    public long getSince()
+    {
+        return since;
+    }
+
+    /**
+     * Steps the engine, or replays the cached toggles once a cycle is confirmed. Multi-state rules are stepped
+     * without detection, because the toggles only record alive and dead and replaying them would erase the dying
+     * states.
+     */
+    public void step(StepEngine engine, long generation)
+    {
+        if(engine.getRule().isGenerations())
+        {
+            engine.step();
+            return;
+        }
+        if(stable)
+        {
+            for(long cell : toggles[phase])
+            {
+                int x = LongHashSet.unpackX(cell);
+                int y = LongHashSet.unpackY(cell);
+                engine.setLiving(x, y, !engine.isLiving(x, y));
+            }
+            phase = (phase + 1) % period;
+            return;
+        }
+        engine.step();
+        long hash = engine.getStateHash();
+        if(confirming > 0)
+            confirm(engine, hash);
+        else
+            search(engine, hash);
+        hashes[(int) (recorded % MAX_PERIOD)] = hash;
+        generations[(int) (recorded % MAX_PERIOD)] = generation;
+        recorded++;
+    }
+
+    private void search(StepEngine engine, long hash)
+    {
+        for(int k = 1; k <= Math.min(recorded, MAX_PERIOD); k++)
+        {
+            int i = (int) ((recorded - k) % MAX_PERIOD);
+            if(hashes[i] == hash)
+            {
+                period = k;
+                since = generations[i];
+                confirming = k;
+                toggles = new long[k][];
+                phase = 0;
+                startCells = cells(engine);
+                phaseCells = startCells;
+                return;
+            }
+        }
+    }
+
+    private void confirm(StepEngine engine, long hash)
+    {
+        if(hashes[(int) ((recorded - period) % MAX_PERIOD)] != hash)
+        {
+            abandon();
+            return;
+        }
+        LongHashSet cells = cells(engine);
+        toggles[phase++] = difference(phaseCells, cells);
+        phaseCells = cells;
+        if(--confirming == 0)
+        {
+            if(difference(startCells, cells).length != 0)
+            {
+                abandon();
+                return;
+            }
+            stable = true;
+            phase = 0;
+            startCells = null;
+            phaseCells = null;
+        }
+    }
+
+    private void abandon()
+    {
+        period = 0;
+        confirming = 0;
+        startCells = null;
+        phaseCells = null;
+        toggles = null;
+    }
+
+    private static LongHashSet cells(StepEngine engine)
+    {
+        LongHashSet cells = new LongHashSet();
+        engine.forEachLiving(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                cells.add(LongHashSet.pack(x, y));
+            }
+        });
+        return cells;
+    }
+
+    private static long[] difference(LongHashSet from, LongHashSet to)
+    {
+        long[] cells = new long[from.size() + to.size()];
+        int n = 0;
+        for(long key : from.rawKeys())
+            if(key != LongHashSet.EMPTY && !to.contains(key))
+                cells[n++] = key;
+        for(long key : to.rawKeys())
+            if(key != LongHashSet.EMPTY && !from.contains(key))
+                cells[n++] = key;
+        return Arrays.copyOf(cells, n);
+    }
+}
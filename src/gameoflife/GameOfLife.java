@@ -39,55 +39,6 @@ public class GameOfLife
     }
 }
 
-class Cell
-{
-    private int neighbours;
-    private boolean currentState;
-    private boolean nextState;
-
-    public Cell()
-    {
-        neighbours = 0;
-        currentState = false;
-        nextState = false;
-    }
-
-    public int getNeighbours()
-    {
-        return neighbours;
-    }
-
-    public void incrementNeighbours()
-    {
-        neighbours++;
-    }
-
-    public void resetNeighbours()
-    {
-        neighbours = 0;
-    }
-
-    public boolean isLiving()
-    {
-        return currentState;
-    }
-
-    public void setLiving(boolean currentState)
-    {
-        this.currentState = currentState;
-    }
-
-    public boolean willLive()
-    {
-        return nextState;
-    }
-
-    public void setNextState(boolean nextState)
-    {
-        this.nextState = nextState;
-    }
-}
-
 class GamePanel extends JPanel
 {
     private Graphics2D g2;
@@ -108,20 +59,22 @@ class GamePanel extends JPanel
         g2.setColor(model.getBackgroundColor());
         g2.fillRect(0, 0, getWidth(), getHeight());
         g2.setColor(model.getDeadColor());
-        g2.fillRect(model.getCamX(), model.getCamY(), model.getGridSize(), model.getGridSize());
+        g2.fillRect(model.getCamX(), model.getCamY(), model.getGridPixelWidth(), model.getGridPixelHeight());
         g2.setColor(model.getGridlineColor());
         drawGrid();
         g2.setColor(model.getLivingColor());
-        for(int r = 0; r < model.getGrid().length; r++)
+        int minX = -model.getCamX() / model.getSize() - 1;
+        int minY = -model.getCamY() / model.getSize() - 1;
+        int maxX = minX + getWidth() / model.getSize() + 2;
+        int maxY = minY + getHeight() / model.getSize() + 2;
+        model.getGrid().forEachLiving(minX, minY, maxX, maxY, new CellVisitor()
         {
-            for(int c = 0; c < model.getGrid()[r].length; c++)
+            @Override
+            public void visit(int x, int y)
             {
-                if(model.getGrid()[r][c].isLiving())
-                {
-                    g2.fillRect(r * model.getSize() + model.getCamX() + 1, c  * model.getSize() + model.getCamY() + 1, model.getSize() - 1, model.getSize() - 1);
-                }
+                g2.fillRect(x * model.getSize() + model.getCamX() + 1, y * model.getSize() + model.getCamY() + 1, model.getSize() - 1, model.getSize() - 1);
             }
-        }
+        });
     }
 
     @Override
@@ -132,24 +85,22 @@ class GamePanel extends JPanel
 
     private void drawGrid()
     {
-        Dimension gridDim = new Dimension();
-        int i;
-        for(i = model.getCamX(); i <= model.getGridSize() + model.getCamX(); i += model.getSize())
+        int right = Math.min(model.getGridPixelWidth() + model.getCamX(), getWidth());
+        int bottom = Math.min(model.getGridPixelHeight() + model.getCamY(), getHeight());
+        if(model.gridVisible())
         {
-            if(model.gridVisible())
-                g2.drawLine(i, model.getCamY(), i, model.getGridSize() + model.getCamY());
+            for(int i = Math.max(model.getCamX(), model.getCamX() % model.getSize()); i <= right; i += model.getSize())
+                g2.drawLine(i, Math.max(model.getCamY(), 0), i, bottom);
+            for(int i = Math.max(model.getCamY(), model.getCamY() % model.getSize()); i <= bottom; i += model.getSize())
+                g2.drawLine(Math.max(model.getCamX(), 0), i, right, i);
         }
-        gridDim.width = i / model.getSize() - 1;
-        for(i = model.getCamY(); i <= model.getGridSize() + model.getCamY(); i += model.getSize())
-        {
-            if(model.gridVisible())
-                g2.drawLine(model.getCamX(), i, model.getGridSize() + model.getCamX(), i);
-        }
-        gridDim.height = i / model.getSize() - 1;
         if(initialize)
         {
-            model.clearGrid(gridDim.width, gridDim.height);
-            model.initializeGrid();
+            if(!model.isSessionRestored())
+            {
+                model.clearGrid(model.getColumns(), model.getRows());
+                model.initializeGrid();
+            }
             initialize = false;
         }
     }
@@ -158,7 +109,9 @@ class GamePanel extends JPanel
 
 class Model
 {
-    private final Dictionary<String, char[][]> ALL_PATTERNS = new Hashtable<>();
+    private static final long STATS_INTERVAL_NANOS = 200000000L;
+
+    private final PatternLibrary patterns = PatternLibrary.create();
 
     private final String[] ALL_SPEEDS = {"Slow", "Normal", "Fast"};
     private final String[] ALL_SIZES = {"Small", "Medium", "Big"};
@@ -166,7 +119,7 @@ class Model
     private boolean defaultGridVisibility;
     private int speed;
     private int size;
-    private int generation = 0;
+    private long generation = 0;
     private Dimension frameSize;
     private String defaultPattern;
     private String defaultSpeed;
@@ -179,11 +132,23 @@ class Model
     private Color defaultLivingColor;
     private Color defaultBackgroundColor;
     private Color defaultGridlineColor;
-    private int gridSize;
-    private final int cellMultiple = 100;
+    private int columns = 100;
+    private int rows = 100;
     private int camX;
     private int camY;
-    private Cell[][] grid;
+    private StepEngine grid = new BitboardEngine();
+    private ObjectClassifier classifier;
+    private boolean tileTracking = false;
+    private boolean cycleDetection = false;
+    private final CycleDetector cycles = new CycleDetector();
+    private final History history = new History();
+    private boolean historyEnabled = false;
+    private boolean historyStale = true;
+    private Checkpointer checkpointer;
+    private boolean sessionRestored = false;
+    private final ArrayList<GenerationStatsListener> statsListeners = new ArrayList<>();
+    private boolean statsPending = false;
+    private long statsPublished;
 
     public Model()
     {
@@ -240,156 +205,6 @@ class Model
         livingColor = defaultLivingColor;
         gridlineColor = defaultGridlineColor;
         showGrid = defaultGridVisibility;
-
-        gridSize = size * cellMultiple;
-        ALL_PATTERNS.put("Clear", new char[][]{});
-        ALL_PATTERNS.put("Blinker", new char[][]{
-                {'Y', 'Y', 'Y'}
-        });
-        ALL_PATTERNS.put("Block", new char[][]{
-                {'Y', 'Y'},
-                {'Y', 'Y'}
-        });
-        ALL_PATTERNS.put("Tub", new char[][]{
-                {'N', 'Y', 'N'},
-                {'Y', 'N', 'Y'},
-                {'N', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Boat", new char[][]{
-                {'Y', 'Y', 'N'},
-                {'Y', 'N', 'Y'},
-                {'N', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Glider", new char[][]{
-                {'Y', 'Y', 'Y'},
-                {'Y', 'N', 'N'},
-                {'N', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Ship", new char[][]{
-                {'Y', 'Y', 'N'},
-                {'Y', 'N', 'Y'},
-                {'N', 'Y', 'Y'}
-        });
-        ALL_PATTERNS.put("Beehive", new char[][]{
-                {'N', 'Y', 'Y', 'N'},
-                {'Y', 'N', 'N', 'Y'},
-                {'N', 'Y', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Barge", new char[][]{
-                {'N', 'Y', 'N', 'N'},
-                {'Y', 'N', 'Y', 'N'},
-                {'N', 'Y', 'N', 'Y'},
-                {'N', 'N', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Toad", new char[][]{
-                {'Y', 'Y', 'Y', 'N'},
-                {'N', 'Y', 'Y', 'Y'},
-        });
-        ALL_PATTERNS.put("Beacon", new char[][]{
-                {'Y', 'Y', 'N', 'N'},
-                {'Y', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'Y'},
-                {'N', 'N', 'Y', 'Y'}
-        });
-        ALL_PATTERNS.put("Long Boat", new char[][]{
-                {'Y', 'Y', 'N', 'N'},
-                {'Y', 'N', 'Y', 'N'},
-                {'N', 'Y', 'N', 'Y'},
-                {'N', 'N', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Load", new char[][]{
-                {'N', 'Y', 'Y', 'N'},
-                {'Y', 'N', 'N', 'Y'},
-                {'Y', 'N', 'Y', 'N'},
-                {'N', 'Y', 'N', 'N'}
-        });
-        ALL_PATTERNS.put("Pond", new char[][]{
-                {'N', 'Y', 'Y', 'N'},
-                {'Y', 'N', 'N', 'Y'},
-                {'Y', 'N', 'N', 'Y'},
-                {'N', 'Y', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Mango", new char[][]{
-                {'N', 'Y', 'Y', 'N', 'N'},
-                {'Y', 'N', 'N', 'Y', 'N'},
-                {'N', 'Y', 'N', 'N', 'Y'},
-                {'N', 'N', 'Y', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Long Barge", new char[][]{
-                {'N', 'Y', 'N', 'N', 'N'},
-                {'Y', 'N', 'Y', 'N', 'N'},
-                {'N', 'Y', 'N', 'Y', 'N'},
-                {'N', 'N', 'Y', 'N', 'Y'},
-                {'N', 'N', 'N', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Half-Fleet", new char[][]{
-                {'Y', 'Y', 'N', 'N', 'N', 'N'},
-                {'Y', 'N', 'Y', 'N', 'N', 'N'},
-                {'N', 'Y', 'Y', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'Y', 'Y', 'N'},
-                {'N', 'N', 'N', 'Y', 'N', 'Y'},
-                {'N', 'N', 'N', 'N', 'Y', 'Y'},
-        });
-        ALL_PATTERNS.put("Half-Bakery", new char[][]{
-                {'N', 'Y', 'Y', 'N', 'N', 'N', 'N'},
-                {'Y', 'N', 'N', 'Y', 'N', 'N', 'N'},
-                {'N', 'Y', 'N', 'Y', 'N', 'N', 'N'},
-                {'N', 'N', 'Y', 'N', 'Y', 'Y', 'N'},
-                {'N', 'N', 'N', 'Y', 'N', 'N', 'Y'},
-                {'N', 'N', 'N', 'N', 'Y', 'N', 'Y'},
-                {'N', 'N', 'N', 'N', 'N', 'Y', 'N'}
-        });
-        ALL_PATTERNS.put("Gosper Glider Gun", new char[][]{
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'Y'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'Y'},
-                {'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'Y', 'N', 'Y', 'Y', 'N', 'N', 'N', 'N', 'Y', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-        });
-        ALL_PATTERNS.put("Candelabra", new char[][]{
-                {'N', 'N', 'N', 'N', 'Y', 'Y', 'N', 'N', 'N', 'N', 'Y', 'Y', 'N', 'N', 'N', 'N'},
-                {'N', 'Y', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'Y', 'N'},
-                {'Y', 'N', 'Y', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'Y', 'N', 'Y'},
-                {'N', 'Y', 'N', 'N', 'Y', 'N', 'Y', 'Y', 'Y', 'Y', 'N', 'Y', 'N', 'N', 'Y', 'N'},
-                {'N', 'N', 'N', 'N', 'Y', 'N', 'Y', 'N', 'N', 'Y', 'N', 'Y', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N'}
-        });
-        ALL_PATTERNS.put("Beaconmaker", new char[][]{
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'Y'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'Y'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'Y', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'}
-        });
-        ALL_PATTERNS.put("Chemist", new char[][]{
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'Y', 'Y', 'Y', 'N', 'N', 'Y', 'N', 'N', 'Y', 'Y'},
-                {'N', 'N', 'N', 'N', 'Y', 'N', 'Y', 'N', 'Y', 'N', 'Y', 'N', 'Y', 'N', 'Y'},
-                {'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'Y', 'N', 'Y', 'N', 'Y', 'N', 'N'},
-                {'N', 'Y', 'Y', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'Y', 'Y', 'N'},
-                {'N', 'N', 'Y', 'N', 'Y', 'N', 'Y', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N'},
-                {'Y', 'N', 'Y', 'N', 'Y', 'N', 'Y', 'N', 'Y', 'N', 'Y', 'N', 'N', 'N', 'N'},
-                {'Y', 'Y', 'N', 'N', 'Y', 'N', 'N', 'Y', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'Y', 'Y', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-                {'N', 'N', 'N', 'N', 'N', 'N', 'N', 'Y', 'N', 'N', 'N', 'N', 'N', 'N', 'N'},
-        });
     }
 
     private Color getColor(Scanner data)
@@ -422,50 +237,472 @@ class Model
     public void setSize(int size)
     {
         this.size = size;
-        gridSize = size * cellMultiple;
     }
 
     public void resetGeneration()
     {
+        cycles.reset();
+        history.clear();
         generation = 0;
+        checkpoint();
+    }
+
+    public long incrementGeneration()
+    {
+        this.generation += 1L << grid.getStepExponent();
+        return generation;
     }
 
-    public int incrementGeneration()
+    public long step()
     {
-        this.generation++;
+        if(historyEnabled && (historyStale || history.getNewestGeneration() != generation))
+            history.record(grid, generation);
+        historyStale = false;
+        if(cycleDetection && grid.getStepExponent() == 0)
+            cycles.step(grid, generation + 1);
+        else
+            grid.step();
+        incrementGeneration();
+        grid.setGeneration(generation);
+        if(historyEnabled)
+            history.record(grid, generation);
+        if(checkpointer != null)
+            checkpointer.recordGeneration(grid, generation);
+        statsPending = !statsListeners.isEmpty();
+        if(statsPending && System.nanoTime() - statsPublished >= STATS_INTERVAL_NANOS)
+            publishGenerationStats();
         return generation;
     }
 
-    public int getGeneration()
+    /**
+     * Computes the statistics of the current generation and hands them to the listeners, if a step has not been
+     * reported yet. Steps report at most once per STATS_INTERVAL_NANOS, because the statistics can take longer than
+     * the step; call this when stepping pauses so that the last generation is shown.
+     */
+    public void publishGenerationStats()
+    {
+        if(!statsPending)
+            return;
+        statsPending = false;
+        statsPublished = System.nanoTime();
+        GenerationStats stats = grid.getGenerationStats(generation);
+        for(GenerationStatsListener listener : statsListeners)
+            listener.generationComputed(stats);
+    }
+
+    public void addGenerationStatsListener(GenerationStatsListener listener)
+    {
+        statsListeners.add(listener);
+    }
+
+    public boolean isCycleDetection()
+    {
+        return cycleDetection;
+    }
+
+    public void setCycleDetection(boolean cycleDetection)
+    {
+        this.cycleDetection = cycleDetection;
+        cycles.reset();
+    }
+
+    public boolean isHistoryEnabled()
+    {
+        return historyEnabled;
+    }
+
+    /**
+     * Turns recording of history on or off. History is kept only for two-state rules.
+     *
+     * @throws IllegalArgumentException if history is turned on under a multi-state rule
+     */
+    public void setHistoryEnabled(boolean historyEnabled)
+    {
+        if(historyEnabled && grid.getRule().isGenerations())
+            throw new IllegalArgumentException("History cannot be recorded for the multi-state rule " + grid.getRule() + ".");
+        this.historyEnabled = historyEnabled;
+        history.clear();
+    }
+
+    /**
+     * Goes back to the newest recorded generation before the current one. Returns false if there is none.
+     */
+    public boolean stepBack()
+    {
+        long previous = history.previousGeneration(generation);
+        return previous >= 0 && jumpToGeneration(previous);
+    }
+
+    public boolean jumpToGeneration(long target)
+    {
+        if(!history.restore(grid, target))
+            return false;
+        cycles.reset();
+        generation = target;
+        checkpoint();
+        return true;
+    }
+
+    public String getHistoryRange()
+    {
+        if(history.isEmpty())
+            return "The history is empty";
+        return "The history holds generations " + history.getOldestGeneration() + " to " + history.getNewestGeneration()
+                + " (" + history.getFrameCount() + " frames, " + (history.getBytes() >> 10) + " KB)";
+    }
+
+    /**
+     * Returns the session left behind by a run that did not exit cleanly, or null if there is nothing to recover.
+     */
+    public Checkpointer.Session findRecoverableSession()
+    {
+        return Checkpointer.Session.find(Checkpointer.DEFAULT_DIRECTORY);
+    }
+
+    /**
+     * Restores the universe from a checkpoint. A Mapped universe keeps its own file, which Resume Mapped Universe
+     * reopens, so its checkpoint is restored into the Bitboard engine rather than over that file.
+     */
+    public void restoreSession(Checkpointer.Session session) throws IOException
+    {
+        setEngine(session.getEngine().equals(StepEngines.MAPPED) ? StepEngines.BITBOARD : session.getEngine());
+        columns = session.getWidth();
+        rows = session.getHeight();
+        grid.resize(columns, rows);
+        grid.setRule(session.getRule());
+        grid.setBoundary(session.getBoundary());
+        generation = session.restore(grid);
+        grid.setGeneration(generation);
+        cycles.reset();
+        history.clear();
+        sessionRestored = true;
+    }
+
+    public boolean isSessionRestored()
+    {
+        return sessionRestored;
+    }
+
+    /**
+     * Starts checkpointing the universe in the background so that it can be recovered after a crash.
+     */
+    public void startCheckpoints()
+    {
+        if(checkpointer != null)
+            return;
+        checkpointer = new Checkpointer(Checkpointer.DEFAULT_DIRECTORY, Checkpointer.DEFAULT_INTERVAL_SECONDS);
+        checkpoint();
+    }
+
+    /**
+     * Stops checkpointing and deletes the recovery files. Called on a clean exit.
+     */
+    public void discardCheckpoints()
+    {
+        if(checkpointer != null)
+            checkpointer.discard();
+        checkpointer = null;
+    }
+
+    /**
+     * Hands the current generation to the engine and saves a checkpoint. Called whenever the universe or its
+     * generation is replaced.
+     */
+    private void checkpoint()
+    {
+        grid.setGeneration(generation);
+        if(checkpointer != null)
+            checkpointer.checkpoint(grid, generation);
+    }
+
+    public String getCycleStatus()
+    {
+        if(!cycles.isStable())
+            return null;
+        return "stable with period " + cycles.getPeriod() + " since generation " + cycles.getSince();
+    }
+
+    public long getGeneration()
     {
         return generation;
     }
 
-    public void setGeneration(int generation)
+    public void setGeneration(long generation)
     {
+        cycles.reset();
+        history.clear();
         this.generation = generation;
+        checkpoint();
     }
 
-    public Cell[][] getGrid()
+    public StepEngine getGrid()
     {
         return grid;
     }
 
+    public String getEngine()
+    {
+        return grid.getName();
+    }
+
+    /**
+     * Switches to the named engine, copying the universe into it. The Mapped engine is backed by
+     * MappedEngine.DEFAULT_FILE, which is never overwritten here; use setMappedEngine to choose the file.
+     */
+    public void setEngine(String name)
+    {
+        if(name.equals(grid.getName()))
+            return;
+        if(name.equals(StepEngines.MAPPED) && MappedEngine.DEFAULT_FILE.toFile().exists())
+            throw new IllegalStateException(MappedEngine.DEFAULT_FILE.toAbsolutePath() + " already exists and would be overwritten");
+        setEngine(StepEngines.create(name));
+    }
+
+    /**
+     * Switches to a Mapped engine backed by file, which is created or overwritten.
+     */
+    public void setMappedEngine(File file)
+    {
+        setEngine(new MappedEngine(file.toPath()));
+    }
+
+    private void setEngine(StepEngine engine)
+    {
+        cycles.reset();
+        StepEngines.copy(grid, engine);
+        engine.setParallelism(grid.getParallelism());
+        engine.setStepExponent(grid.getStepExponent());
+        if(engine.supports(grid.getRule()))
+            engine.setRule(grid.getRule());
+        if(engine.supports(grid.getBoundary()))
+            engine.setBoundary(grid.getBoundary());
+        StepEngine previous = grid;
+        grid = engine;
+        setTileTracking(tileTracking);
+        checkpoint();
+        previous.dispose();
+    }
+
+    public int getParallelism()
+    {
+        return grid.getParallelism();
+    }
+
+    public void setParallelism(int parallelism)
+    {
+        grid.setParallelism(parallelism);
+    }
+
+    public boolean isBounded()
+    {
+        return grid.isBounded();
+    }
+
+    public Rule getRule()
+    {
+        return grid.getRule();
+    }
+
+    public void setRule(Rule rule)
+    {
+        cycles.reset();
+        if(!grid.supports(rule))
+            setEngine(rule.isGenerations() ? StepEngines.GENERATIONS : StepEngines.BITBOARD);
+        grid.setRule(rule);
+        if(rule.isGenerations())
+            setHistoryEnabled(false);
+        checkpoint();
+    }
+
+    public Boundary getBoundary()
+    {
+        return grid.getBoundary();
+    }
+
+    public void setBoundary(Boundary boundary)
+    {
+        cycles.reset();
+        if(!grid.supports(boundary))
+            setEngine(StepEngines.BITBOARD);
+        grid.setBoundary(boundary);
+        checkpoint();
+    }
+
+    public String[] getBoundaries()
+    {
+        ArrayList<String> boundaries = new ArrayList<>();
+        for(Boundary boundary : Boundary.values())
+            boundaries.add(boundary.toString());
+        return boundaries.toArray(new String[]{});
+    }
+
+    public boolean isTileTracking()
+    {
+        return tileTracking;
+    }
+
+    public void setTileTracking(boolean tileTracking)
+    {
+        this.tileTracking = tileTracking;
+        if(grid instanceof TileTracking)
+            ((TileTracking) grid).setTileTracking(tileTracking);
+    }
+
+    public String getEngineStatistics()
+    {
+        return grid.getStatistics();
+    }
+
+    public java.util.List<ObjectClassifier.DetectedObject> classifyObjects()
+    {
+        if(classifier == null)
+            classifier = new ObjectClassifier(patterns);
+        return classifier.classify(grid, cycles.isStable() ? cycles.getPeriod() : 1);
+    }
+
+    public void resumeMapped(File file)
+    {
+        cycles.reset();
+        history.clear();
+        MappedEngine engine = MappedEngine.open(file.toPath());
+        engine.setParallelism(grid.getParallelism());
+        StepEngine previous = grid;
+        grid = engine;
+        columns = engine.getWidth();
+        rows = engine.getHeight();
+        generation = engine.getGeneration();
+        checkpoint();
+        previous.dispose();
+    }
+
+    public int getStepExponent()
+    {
+        return grid.getStepExponent();
+    }
+
+    public void setStepExponent(int stepExponent)
+    {
+        cycles.reset();
+        grid.setStepExponent(stepExponent);
+    }
+
+    public int getGridWidth()
+    {
+        return grid.getWidth();
+    }
+
+    public int getGridHeight()
+    {
+        return grid.getHeight();
+    }
+
     public void clearGrid(int width, int height)
     {
-        grid = new Cell[width][height];
+        cycles.reset();
+        history.clear();
+        grid.resize(width, height);
+        checkpoint();
     }
 
     public void initializeGrid()
     {
-        for(int r = 0; r < grid.length; r++)
-            for(int c = 0; c < grid[r].length; c++)
-                grid[r][c] = new Cell();
+        cycles.reset();
+        historyStale = true;
+        grid.clear();
+        checkpoint();
+    }
+
+    /**
+     * Replaces the universe with a loaded one, taking over its rule and, for universes saved from a bounded grid, its
+     * size.
+     */
+    public void loadUniverse(UniverseFile universe)
+    {
+        applyRule(universe.getRule());
+        if(universe.isBounded() && grid.isBounded() && (universe.getWidth() != columns || universe.getHeight() != rows))
+        {
+            columns = universe.getWidth();
+            rows = universe.getHeight();
+            grid.resize(columns, rows);
+        }
+        cycles.reset();
+        history.clear();
+        universe.placeInto(grid);
+        generation = universe.getGeneration();
+        checkpoint();
+    }
+
+    /**
+     * Replaces the universe with an imported pattern. A Macrocell pattern that does not fit a bounded universe, or any
+     * pattern beyond the maximum universe size, is loaded into HashLife when the rule allows it; otherwise the
+     * universe grows to fit the pattern.
+     */
+    public void importPattern(PatternFile pattern)
+    {
+        Rule rule = pattern.getRule() != null ? pattern.getRule() : grid.getRule();
+        long[] bounds = pattern.getBounds();
+        if(grid.isBounded() && bounds != null)
+        {
+            long width = bounds[2] - bounds[0] + 1;
+            long height = bounds[3] - bounds[1] + 1;
+            boolean fits = width <= columns && height <= rows;
+            boolean tooLarge = width > StepEngines.MAX_GRID_SIDE || height > StepEngines.MAX_GRID_SIDE
+                    || !fits && pattern.getFormat() == PatternFile.Format.MACROCELL;
+            if(tooLarge && StepEngines.create(StepEngines.HASHLIFE).supports(rule))
+                setEngine(StepEngines.HASHLIFE);
+            else if(!fits)
+            {
+                columns = (int) Math.min(StepEngines.MAX_GRID_SIDE, Math.max(columns, width));
+                rows = (int) Math.min(StepEngines.MAX_GRID_SIDE, Math.max(rows, height));
+                grid.resize(columns, rows);
+            }
+        }
+        applyRule(pattern.getRule());
+        cycles.reset();
+        history.clear();
+        pattern.placeInto(grid);
+        generation = pattern.getGeneration();
+        checkpoint();
+    }
+
+    private void applyRule(Rule rule)
+    {
+        if(rule == null || rule.equals(grid.getRule()))
+            return;
+        if(!grid.supports(rule))
+            setEngine(rule.isGenerations() ? StepEngines.GENERATIONS : StepEngines.BITBOARD);
+        grid.setRule(rule);
+    }
+
+    /**
+     * Replays a soup as the soup search ran it: a dead-bordered square universe of the search's size and rule on a
+     * bounded engine, with the soup in the middle.
+     */
+    public void placeSoup(SoupSearch.Replay soup)
+    {
+        if(!grid.isBounded() || !grid.supports(Boundary.DEAD))
+            setEngine(StepEngines.BITBOARD);
+        setRule(soup.getRule());
+        setBoundary(Boundary.DEAD);
+        setUniverseSize(soup.getUniverseSide(), soup.getUniverseSide());
+        historyStale = true;
+        grid.clear();
+        SoupSearch.placeSoup(grid, soup.getSeed(), soup.getSoupSide());
+        checkpoint();
+    }
+
+    public boolean isLiving(int x, int y)
+    {
+        return grid.isLiving(x, y);
     }
 
     public void setLiving(int x, int y, boolean living)
     {
-        grid[x][y].setLiving(living);
+        cycles.reset();
+        historyStale = true;
+        grid.setLiving(x, y, living);
+        if(checkpointer != null)
+            checkpointer.recordEdit(x, y, living);
     }
 
     public String getDefaultPattern()
@@ -628,24 +865,59 @@ class Model
         this.defaultGridlineColor = defaultGridlineColor;
     }
 
-    public int getGridSize()
+    public int getGridPixelWidth()
+    {
+        return size * columns;
+    }
+
+    public int getGridPixelHeight()
+    {
+        return size * rows;
+    }
+
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    public void setUniverseSize(int columns, int rows)
     {
-        return gridSize;
+        if(columns < 1 || rows < 1 || columns > StepEngines.MAX_GRID_SIDE || rows > StepEngines.MAX_GRID_SIDE)
+            throw new IllegalArgumentException("Universe size must be between 1x1 and " + StepEngines.MAX_GRID_SIDE + "x" + StepEngines.MAX_GRID_SIDE);
+        this.columns = columns;
+        this.rows = rows;
+        cycles.reset();
+        history.clear();
+        grid.resize(columns, rows);
+        checkpoint();
     }
 
     public String[] getPatterns()
     {
         String[] s = new String[]{};
-        ArrayList<String> list = Collections.list(ALL_PATTERNS.keys());
-        Collections.sort(list);
+        ArrayList<String> list = new ArrayList<>(Arrays.asList(patterns.getNames()));
         list.remove("Clear");
         list.add(0, "Clear");
         return list.toArray(s);
     }
 
-    public Dictionary getPatternDictionary()
+    /**
+     * Stamps a library pattern into the middle of the universe.
+     */
+    public void addPattern(String name)
     {
-        return ALL_PATTERNS;
+        PatternLibrary.Pattern pattern = patterns.get(name);
+        if(pattern == null)
+            throw new IllegalArgumentException("Unknown pattern: " + name);
+        cycles.reset();
+        historyStale = true;
+        pattern.place(grid);
+        checkpoint();
     }
 
     public String[] getSpeeds()
@@ -658,6 +930,21 @@ class Model
         return ALL_SIZES;
     }
 
+    public String[] getEngines()
+    {
+        return StepEngines.getNames();
+    }
+
+    public String[] getThreadCounts()
+    {
+        ArrayList<String> counts = new ArrayList<>();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for(int i = 1; i < cores; i *= 2)
+            counts.add(String.valueOf(i));
+        counts.add(String.valueOf(cores));
+        return counts.toArray(new String[]{});
+    }
+
     public Dimension getFrameSize()
     {
         return frameSize;
@@ -671,12 +958,15 @@ class View extends JFrame
     private final JCheckBox edit = new JCheckBox("Edit Mode");
     private final JCheckBox[] showGrid = new JCheckBox[2];
     private final JCheckBoxMenuItem editOnStart = new JCheckBoxMenuItem("Allow Edit on Start");
+    private final JCheckBoxMenuItem tileTracking = new JCheckBoxMenuItem("Skip Stable Tiles");
+    private final JCheckBoxMenuItem cycleDetection = new JCheckBoxMenuItem("Detect Cycles", false);
     private final JButton next = new JButton("Next");
     private final JButton startStop = new JButton("Start");
     private final JSlider speedSlider;
     private final JSlider sizeSlider;
     private final JComboBox patternBox = new JComboBox<>();
     private final JLabel generation = new JLabel();
+    private final JLabel population = new JLabel();
     private final JMenu file;
     private final JMenu preferences;
     private final JMenu options;
@@ -687,6 +977,10 @@ class View extends JFrame
     private final JMenuItem[] loadMenu;
     private final JMenuItem shortcutMenu = new JMenuItem("Shortcuts");
     private final JMenuItem quitMenu = new JMenuItem("Quit");
+    private final JMenuItem importMenu = new JMenuItem("Import Pattern...");
+    private final JMenuItem exportMenu = new JMenuItem("Export Pattern...");
+    private final JMenuItem ruleMenu = new JMenuItem("Rule...");
+    private final JMenuItem resumeMappedMenu = new JMenuItem("Resume Mapped Universe...");
     private final JMenuItem[] backgroundColorMenu;
     private final JMenuItem[] deadColorMenu;
     private final JMenuItem[] livingColorMenu;
@@ -694,6 +988,15 @@ class View extends JFrame
     private final JRadioButtonMenuItem[] patternRadio;
     private final JRadioButtonMenuItem[] speedRadio;
     private final JRadioButtonMenuItem[] sizeRadio;
+    private final JRadioButtonMenuItem[] engineRadio;
+    private final JRadioButtonMenuItem[] threadRadio;
+    private final JRadioButtonMenuItem[] boundaryRadio;
+    private final JMenuItem universeSizeMenu = new JMenuItem("Universe Size...");
+    private final JMenuItem soupMenu = new JMenuItem("Random Soup...");
+    private final JMenuItem classifyMenu = new JMenuItem("Classify Objects...");
+    private final JMenuItem stepBackMenu = new JMenuItem("Step Back");
+    private final JMenuItem goToGenerationMenu = new JMenuItem("Go to Generation...");
+    private final JCheckBoxMenuItem recordHistory = new JCheckBoxMenuItem("Record History", false);
     private final JCheckBox showMenu = new JCheckBox("Show Menu");
     private final JMenuBar menuBar = new JMenuBar();
     private final JPopupMenu popup = new JPopupMenu();
@@ -713,7 +1016,7 @@ class View extends JFrame
         gridlineColorMenu = initializeJMenuItems("Gridline Color");
         for(int i = 0; i < showGrid.length; i++)
             showGrid[i] = new JCheckBox("Show Gridlines");
-        file = addMenu("File", 'F', loadMenu[0], saveMenu[0], quitMenu);
+        file = addMenu("File", 'F', loadMenu[0], saveMenu[0], importMenu, exportMenu, quitMenu);
         menuBar.add(file);
         JMenu patternMenu = new JMenu("Shapes");
         JMenu speedMenu = new JMenu("Speed");
@@ -730,6 +1033,30 @@ class View extends JFrame
         options = addMenu("Options", 'O', backgroundColorMenu[1], deadColorMenu[1], livingColorMenu[1], gridlineColorMenu[1]);
         options.addSeparator();
         options.add(editOnStart);
+        options.add(tileTracking);
+        options.add(cycleDetection);
+        options.add(recordHistory);
+        options.add(stepBackMenu);
+        options.add(goToGenerationMenu);
+        options.add(ruleMenu);
+        options.add(universeSizeMenu);
+        options.add(soupMenu);
+        options.add(classifyMenu);
+        options.add(resumeMappedMenu);
+        JMenu boundaryMenu = new JMenu("Boundary");
+        boundaryRadio = addMenuOption(model.getBoundaries(), boundaryMenu);
+        selectBoundary(model.getBoundary());
+        options.add(boundaryMenu);
+        JMenu engineMenu = new JMenu("Engine");
+        engineRadio = addMenuOption(model.getEngines(), engineMenu);
+        for(JRadioButtonMenuItem item : engineRadio)
+            item.setSelected(item.getText().equals(model.getEngine()));
+        options.add(engineMenu);
+        JMenu threadMenu = new JMenu("Threads");
+        threadRadio = addMenuOption(model.getThreadCounts(), threadMenu);
+        for(JRadioButtonMenuItem item : threadRadio)
+            item.setSelected(item.getText().equals(String.valueOf(model.getParallelism())));
+        options.add(threadMenu);
         menuBar.add(options);
         help = addMenu("Help", 'H', helpMenu[0], shortcutMenu, aboutMenu[0]);
         menuBar.add(help);
@@ -760,7 +1087,7 @@ class View extends JFrame
         patternBox.setSelectedItem(model.getDefaultPattern());
         speedSlider = addSlider(50, 800, 1550, 250, 750, model.getDefaultSpeed(), "Slow", "Normal", "Fast", model.getDefaultBackgroundColor());
         sizeSlider = addSlider(5, 20, 35, 5, 15, model.getDefaultSize(), "Small", "Medium", "Big", model.getDefaultBackgroundColor());
-        addComponents(optionsPanel, edit, patternBox, speedSlider, next, showGrid[0], generation, sizeSlider, startStop);
+        addComponents(optionsPanel, edit, patternBox, speedSlider, next, showGrid[0], generation, population, sizeSlider, startStop);
         showGrid[0].setSelected(model.gridVisible());
         add(optionsPanel, BorderLayout.SOUTH);
         setMinimumSize(new Dimension(750, 400));
@@ -834,8 +1161,9 @@ class View extends JFrame
     public String saveFile()
     {
         JFileChooser chooser = new JFileChooser();
-        chooser.setSelectedFile(new File("SavedData.txt"));
-        chooser.setFileFilter(new FileNameExtensionFilter("TXT File", "txt"));
+        chooser.setSelectedFile(new File("SavedData." + UniverseFile.EXTENSION));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("TXT File", "txt"));
+        chooser.setFileFilter(new FileNameExtensionFilter("Saved Universe", UniverseFile.EXTENSION));
         if(chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
             return chooser.getSelectedFile().toString();
         else
@@ -845,13 +1173,70 @@ class View extends JFrame
     public String loadFile()
     {
         JFileChooser chooser = new JFileChooser();
-        chooser.setFileFilter(new FileNameExtensionFilter("TXT File", "txt"));
+        chooser.setFileFilter(new FileNameExtensionFilter("Saved Universe", UniverseFile.EXTENSION, "txt"));
         if(chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION)
             return chooser.getSelectedFile().toString();
         else
             return "";
     }
 
+    public File importFile()
+    {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Patterns (RLE, Life 1.06, Macrocell)", "rle", "lif", "life", "mc"));
+        if(chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION)
+            return chooser.getSelectedFile();
+        else
+            return null;
+    }
+
+    public File exportFile()
+    {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("pattern.rle"));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("Life 1.06", "lif"));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("Macrocell", "mc"));
+        chooser.setFileFilter(new FileNameExtensionFilter("RLE", "rle"));
+        if(chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
+            return chooser.getSelectedFile();
+        else
+            return null;
+    }
+
+    public void showExportError(Exception e)
+    {
+        JOptionPane.showMessageDialog(this, "The pattern could not be written:\n\n" + e.toString(), "Error exporting pattern", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Asks for the file to back a new Mapped universe, confirming before an existing file is overwritten. Returns
+     * null if cancelled.
+     */
+    public File newMappedFile()
+    {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(MappedEngine.DEFAULT_FILE.toAbsolutePath().toFile());
+        chooser.setFileFilter(new FileNameExtensionFilter("Mapped Universe", "map"));
+        if(chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+            return null;
+        File file = chooser.getSelectedFile();
+        if(file.exists() && JOptionPane.showConfirmDialog(this, file + " already exists. Overwrite it?", "Mapped Universe",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION)
+            return null;
+        return file;
+    }
+
+    public File mappedFile()
+    {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(MappedEngine.DEFAULT_FILE.toAbsolutePath().toFile());
+        chooser.setFileFilter(new FileNameExtensionFilter("Mapped Universe", "map"));
+        if(chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION)
+            return chooser.getSelectedFile();
+        else
+            return null;
+    }
+
     public void showError(Exception e)
     {
         JOptionPane.showMessageDialog(this, "File is invalid:\n\n" + e.toString(), "Error opening file", JOptionPane.ERROR_MESSAGE);
@@ -943,7 +1328,9 @@ class View extends JFrame
                     <u>A</u> = About Window <br>
                     <u>K</u> = Shortcut Window <br><br>
                     <u>Spacebar</u> = Next <br>
-                    <u>Enter</u> = Start/Stop <br><br>
+                    <u>Enter</u> = Start/Stop <br>
+                    <u>Backspace</u> = Step Back <br>
+                    <u>[</u> / <u>]</u> = Halve/Double HashLife Step <br><br>
                     <u>M</u> = Toggle Menu Bar <br>
                     <u>E</u> = Toggle Edit <br>
                     <u>G</u> = Toggle Gridlines <br><br>
@@ -1116,6 +1503,7 @@ class View extends JFrame
         options.setForeground(foreground);
         help.setForeground(foreground);
         generation.setForeground(foreground);
+        population.setForeground(foreground);
     }
 
     public void addPatternPrefActionListener(int index, ActionListener a)
@@ -1133,51 +1521,262 @@ class View extends JFrame
         sizeRadio[index].addActionListener(a);
     }
 
-    public String getPatternPrefText(int index)
+    public void addTileTrackingListener(ActionListener a)
     {
-        return patternRadio[index].getText();
+        tileTracking.addActionListener(a);
     }
 
-    public String getSpeedPrefText(int index)
+    public boolean tileTrackingSelected()
     {
-        return speedRadio[index].getText();
+        return tileTracking.isSelected();
     }
 
-    public String getSizePrefText(int index)
+    public void addCycleDetectionListener(ActionListener a)
     {
-        return sizeRadio[index].getText();
+        cycleDetection.addActionListener(a);
     }
 
-    public void addHelpMenuActionListener(ActionListener a)
+    public boolean cycleDetectionSelected()
     {
-        for(JMenuItem help : helpMenu)
-            help.addActionListener(a);
+        return cycleDetection.isSelected();
     }
 
-    public void addAboutMenuActionListener(ActionListener a)
+    public void updateEngineStatistics(String statistics)
     {
-        for(JMenuItem about : aboutMenu)
-            about.addActionListener(a);
+        generation.setToolTipText(statistics);
     }
 
-    public void addShortcutMenuActionListener(ActionListener a)
+    public void addRuleListener(ActionListener a)
     {
-        shortcutMenu.addActionListener(a);
+        ruleMenu.addActionListener(a);
     }
 
-    public void addGameMouseListener(MouseAdapter a)
+    public void addImportListener(ActionListener a)
     {
-        gamePanel.addMouseListener(a);
+        importMenu.addActionListener(a);
     }
 
-    public void addGameMouseMotionListener(MouseMotionAdapter a)
+    public void addExportListener(ActionListener a)
     {
-        gamePanel.addMouseMotionListener(a);
+        exportMenu.addActionListener(a);
     }
 
-    public void addGameKeyListener(KeyAdapter a)
+    public void addResumeMappedListener(ActionListener a)
     {
-        gamePanel.addKeyListener(a);
+        resumeMappedMenu.addActionListener(a);
+    }
+
+    public String askRule(String current)
+    {
+        return (String) JOptionPane.showInputDialog(this, "Rule (e.g. B3/S23, B36/S23, B2/S, /2/3):", "Rule", JOptionPane.PLAIN_MESSAGE, null, null, current);
+    }
+
+    public void showRuleError(Exception e)
+    {
+        JOptionPane.showMessageDialog(this, e.getMessage(), "Invalid rule", JOptionPane.ERROR_MESSAGE);
+    }
+
+    public void addUniverseSizeListener(ActionListener a)
+    {
+        universeSizeMenu.addActionListener(a);
+    }
+
+    public String askUniverseSize(int columns, int rows)
+    {
+        return (String) JOptionPane.showInputDialog(this, "Universe size (width x height, up to " + StepEngines.MAX_GRID_SIDE + "x" + StepEngines.MAX_GRID_SIDE + "):", "Universe Size", JOptionPane.PLAIN_MESSAGE, null, null, columns + "x" + rows);
+    }
+
+    public void showUniverseSizeError(Exception e)
+    {
+        JOptionPane.showMessageDialog(this, e.getMessage(), "Invalid universe size", JOptionPane.ERROR_MESSAGE);
+    }
+
+    public void addSoupListener(ActionListener a)
+    {
+        soupMenu.addActionListener(a);
+    }
+
+    public String askSoupSeed()
+    {
+        return (String) JOptionPane.showInputDialog(this, "Soup seed, optionally followed by soup size, universe size and rule\n(as printed by the soup search):",
+                "Random Soup", JOptionPane.PLAIN_MESSAGE, null, null, "0");
+    }
+
+    public boolean askRestoreSession(long generation)
+    {
+        return JOptionPane.showConfirmDialog(this, "The previous session did not exit cleanly. Restore the universe from generation " + generation + " onwards?",
+                "Restore Session", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION;
+    }
+
+    public void showRestoreError(Exception e)
+    {
+        JOptionPane.showMessageDialog(this, "The previous session could not be restored:\n\n" + e.toString(), "Restore Session", JOptionPane.ERROR_MESSAGE);
+    }
+
+    public void showSoupSeedError(Exception e)
+    {
+        JOptionPane.showMessageDialog(this, e.getMessage(), "Invalid soup seed", JOptionPane.ERROR_MESSAGE);
+    }
+
+    public void addRecordHistoryListener(ActionListener a)
+    {
+        recordHistory.addActionListener(a);
+    }
+
+    public boolean recordHistorySelected()
+    {
+        return recordHistory.isSelected();
+    }
+
+    public void selectRecordHistory(boolean selected)
+    {
+        recordHistory.setSelected(selected);
+    }
+
+    public void showRecordHistoryError(Exception e)
+    {
+        JOptionPane.showMessageDialog(this, e.getMessage(), "Cannot record history", JOptionPane.ERROR_MESSAGE);
+    }
+
+    public void addStepBackListener(ActionListener a)
+    {
+        stepBackMenu.addActionListener(a);
+    }
+
+    public void addGoToGenerationListener(ActionListener a)
+    {
+        goToGenerationMenu.addActionListener(a);
+    }
+
+    public String askGeneration(long current)
+    {
+        return (String) JOptionPane.showInputDialog(this, "Generation:", "Go to Generation", JOptionPane.PLAIN_MESSAGE, null, null, String.valueOf(current));
+    }
+
+    public void showHistoryError(String message)
+    {
+        JOptionPane.showMessageDialog(this, message, "Generation not in history", JOptionPane.ERROR_MESSAGE);
+    }
+
+    public void addClassifyListener(ActionListener a)
+    {
+        classifyMenu.addActionListener(a);
+    }
+
+    public void showObjects(java.util.List<ObjectClassifier.DetectedObject> objects, long millis)
+    {
+        Map<String, Integer> counts = new HashMap<>();
+        for(ObjectClassifier.DetectedObject object : objects)
+        {
+            Integer count = counts.get(object.getLabel());
+            counts.put(object.getLabel(), count == null ? 1 : count + 1);
+        }
+        ArrayList<Map.Entry<String, Integer>> sorted = new ArrayList<>(counts.entrySet());
+        sorted.sort(new Comparator<Map.Entry<String, Integer>>()
+        {
+            @Override
+            public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b)
+            {
+                return !a.getValue().equals(b.getValue()) ? b.getValue() - a.getValue() : a.getKey().compareTo(b.getKey());
+            }
+        });
+        StringBuilder text = new StringBuilder();
+        text.append(objects.size()).append(" objects, ").append(sorted.size()).append(" distinct (").append(millis).append(" ms)\n\n");
+        for(Map.Entry<String, Integer> entry : sorted)
+            text.append(String.format("%8d  %s%n", entry.getValue(), entry.getKey()));
+        JTextArea area = new JTextArea(text.toString(), 20, 40);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        area.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(area), "Objects", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    public void addBoundaryActionListener(int index, ActionListener a)
+    {
+        boundaryRadio[index].addActionListener(a);
+    }
+
+    public String getBoundaryText(int index)
+    {
+        return boundaryRadio[index].getText();
+    }
+
+    public void selectBoundary(Boundary boundary)
+    {
+        for(JRadioButtonMenuItem item : boundaryRadio)
+            item.setSelected(item.getText().equals(boundary.toString()));
+    }
+
+    public void selectEngine(String name)
+    {
+        for(JRadioButtonMenuItem item : engineRadio)
+            item.setSelected(item.getText().equals(name));
+    }
+
+    public void addEngineActionListener(int index, ActionListener a)
+    {
+        engineRadio[index].addActionListener(a);
+    }
+
+    public String getEngineText(int index)
+    {
+        return engineRadio[index].getText();
+    }
+
+    public void addThreadActionListener(int index, ActionListener a)
+    {
+        threadRadio[index].addActionListener(a);
+    }
+
+    public int getThreadCount(int index)
+    {
+        return Integer.parseInt(threadRadio[index].getText());
+    }
+
+    public String getPatternPrefText(int index)
+    {
+        return patternRadio[index].getText();
+    }
+
+    public String getSpeedPrefText(int index)
+    {
+        return speedRadio[index].getText();
+    }
+
+    public String getSizePrefText(int index)
+    {
+        return sizeRadio[index].getText();
+    }
+
+    public void addHelpMenuActionListener(ActionListener a)
+    {
+        for(JMenuItem help : helpMenu)
+            help.addActionListener(a);
+    }
+
+    public void addAboutMenuActionListener(ActionListener a)
+    {
+        for(JMenuItem about : aboutMenu)
+            about.addActionListener(a);
+    }
+
+    public void addShortcutMenuActionListener(ActionListener a)
+    {
+        shortcutMenu.addActionListener(a);
+    }
+
+    public void addGameMouseListener(MouseAdapter a)
+    {
+        gamePanel.addMouseListener(a);
+    }
+
+    public void addGameMouseMotionListener(MouseMotionAdapter a)
+    {
+        gamePanel.addMouseMotionListener(a);
+    }
+
+    public void addGameKeyListener(KeyAdapter a)
+    {
+        gamePanel.addKeyListener(a);
     }
 
     public void addOptionsKeyListener(KeyAdapter a)
@@ -1225,9 +1824,20 @@ class View extends JFrame
         showMenu.setSelected(!on);
     }
 
-    public void updateGenerationCounter(int generationVal)
+    public void updatePopulation(GenerationStats stats)
     {
-        generation.setText("Generation: " + generationVal);
+        population.setText("Population: " + stats.getPopulation());
+        population.setToolTipText(stats.toString());
+    }
+
+    public void updateGenerationCounter(long generationVal)
+    {
+        updateGenerationCounter(generationVal, null);
+    }
+
+    public void updateGenerationCounter(long generationVal, String status)
+    {
+        generation.setText("Generation: " + generationVal + (status == null ? "" : " (" + status + ")"));
     }
 
     public void changeCursor(boolean isDragging, boolean editMode)
@@ -1357,6 +1967,7 @@ class Controller
             @Override
             public void actionPerformed(ActionEvent e)
             {
+                model.discardCheckpoints();
                 System.exit(0);
             }
         });
@@ -1399,7 +2010,7 @@ class Controller
                     resetGeneration();
                 } else
                 {
-                    addPattern((char[][]) model.getPatternDictionary().get(view.getSelectedPattern()));
+                    addPattern(view.getSelectedPattern());
                 }
                 view.repaintGamePanel();
             }
@@ -1440,6 +2051,159 @@ class Controller
                 }
             });
         }
+        for(int i = 0; i < model.getEngines().length; i++)
+        {
+            int finalI = i;
+            view.addEngineActionListener(finalI, new ActionListener()
+            {
+                @Override
+                public void actionPerformed(ActionEvent e)
+                {
+                    changeEngine(view.getEngineText(finalI));
+                }
+            });
+        }
+        for(int i = 0; i < model.getBoundaries().length; i++)
+        {
+            int finalI = i;
+            view.addBoundaryActionListener(finalI, new ActionListener()
+            {
+                @Override
+                public void actionPerformed(ActionEvent e)
+                {
+                    changeBoundary(Boundary.fromText(view.getBoundaryText(finalI)));
+                }
+            });
+        }
+        view.addUniverseSizeListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                String size = view.askUniverseSize(model.getColumns(), model.getRows());
+                if(size != null)
+                    changeUniverseSize(size);
+            }
+        });
+        view.addSoupListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                String seed = view.askSoupSeed();
+                if(seed != null)
+                    placeSoup(seed);
+            }
+        });
+        view.addRecordHistoryListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                try
+                {
+                    model.setHistoryEnabled(view.recordHistorySelected());
+                } catch(IllegalArgumentException ex)
+                {
+                    view.showRecordHistoryError(ex);
+                }
+                view.selectRecordHistory(model.isHistoryEnabled());
+            }
+        });
+        view.addStepBackListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                stepBack();
+            }
+        });
+        view.addGoToGenerationListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                String generation = view.askGeneration(model.getGeneration());
+                if(generation != null)
+                    goToGeneration(generation);
+            }
+        });
+        view.addClassifyListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                classifyObjects();
+            }
+        });
+        view.addRuleListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                String rule = view.askRule(model.getRule().toString());
+                if(rule != null)
+                    changeRule(rule);
+            }
+        });
+        view.addImportListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                File file = view.importFile();
+                if(file != null)
+                    importPattern(file);
+            }
+        });
+        view.addExportListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                File file = view.exportFile();
+                if(file != null)
+                    exportPattern(file);
+            }
+        });
+        view.addResumeMappedListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                File file = view.mappedFile();
+                if(file != null)
+                    resumeMapped(file);
+            }
+        });
+        view.addCycleDetectionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                model.setCycleDetection(view.cycleDetectionSelected());
+            }
+        });
+        view.addTileTrackingListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                model.setTileTracking(view.tileTrackingSelected());
+            }
+        });
+        for(int i = 0; i < model.getThreadCounts().length; i++)
+        {
+            int finalI = i;
+            view.addThreadActionListener(finalI, new ActionListener()
+            {
+                @Override
+                public void actionPerformed(ActionEvent e)
+                {
+                    model.setParallelism(view.getThreadCount(finalI));
+                }
+            });
+        }
         view.addHelpMenuActionListener(new ActionListener()
         {
             @Override
@@ -1657,33 +2421,52 @@ class Controller
                     save.print(model.getDefaultGridVisibility());
                     save.close();
                 } catch(FileNotFoundException ex) {}
+                model.discardCheckpoints();
+            }
+        });
+        model.addGenerationStatsListener(new GenerationStatsListener()
+        {
+            @Override
+            public void generationComputed(GenerationStats stats)
+            {
+                view.updatePopulation(stats);
             }
         });
         KeyController keys = new KeyController(model, view, this);
         view.addGameKeyListener(keys);
         view.addOptionsKeyListener(keys);
+        restoreSession();
+        model.startCheckpoints();
     }
 
-    public void saveProgress()
+    private void restoreSession()
     {
-        StringBuilder contents = new StringBuilder(model.getGeneration() + "\n");
-        for(int r = 0; r < model.getGrid().length; r++)
+        Checkpointer.Session session = model.findRecoverableSession();
+        if(session == null || !view.askRestoreSession(session.getCheckpointGeneration()))
+            return;
+        try
         {
-            for(int c = 0; c < model.getGrid()[r].length; c++)
-            {
-                if(model.getGrid()[r][c].isLiving())
-                    contents.append(r).append(",").append(c).append("\n");
-            }
+            model.restoreSession(session);
+        } catch(IOException | RuntimeException ex)
+        {
+            view.showRestoreError(ex);
+            return;
         }
+        view.selectEngine(model.getEngine());
+        view.selectBoundary(model.getBoundary());
+        view.updateGenerationCounter(model.getGeneration());
+        view.repaintGamePanel();
+    }
+
+    public void saveProgress()
+    {
         String saveDirectory = view.saveFile();
         if(!saveDirectory.equals(""))
         {
             try
             {
-                PrintWriter save = new PrintWriter(saveDirectory);
-                save.print(contents);
-                save.close();
-            } catch(FileNotFoundException ex) {}
+                UniverseFile.save(new File(saveDirectory), model.getGrid(), model.getGeneration());
+            } catch(IOException ex) {}
         }
     }
 
@@ -1694,16 +2477,9 @@ class Controller
         {
             try
             {
-                Scanner data = new Scanner(new File(loadDirectory));
-                model.setGeneration(data.nextInt());
+                model.loadUniverse(UniverseFile.load(new File(loadDirectory)));
+                view.selectEngine(model.getEngine());
                 view.updateGenerationCounter(model.getGeneration());
-                model.initializeGrid();
-                while(data.hasNext())
-                {
-                    String[] pos = data.next().split(",");
-                    model.setLiving(Integer.parseInt(pos[0]), Integer.parseInt(pos[1]), true);
-                }
-                data.close();
                 view.repaintGamePanel();
             } catch(Exception ex)
             {
@@ -1732,6 +2508,7 @@ class Controller
                         {
                         }
                     }
+                    publishGenerationStats();
                 }
             });
             simulateThread.start();
@@ -1744,244 +2521,191 @@ class Controller
         }
     }
 
+    private synchronized void publishGenerationStats()
+    {
+        model.publishGenerationStats();
+    }
+
     private void resetGeneration()
     {
         model.resetGeneration();
         view.updateGenerationCounter(0);
     }
 
-    public void simulateGeneration()
+    public synchronized void changeEngine(String name)
     {
-        calculateNeighbours();
-        calculateNextState();
-        simulateNextState();
-        view.updateGenerationCounter(model.incrementGeneration());
+        try
+        {
+            if(!name.equals(StepEngines.MAPPED))
+                model.setEngine(name);
+            else if(!name.equals(model.getEngine()))
+            {
+                File file = view.newMappedFile();
+                if(file != null)
+                    model.setMappedEngine(file);
+            }
+        } catch(RuntimeException ex)
+        {
+            view.showError(ex);
+        }
+        view.selectEngine(model.getEngine());
+        view.selectBoundary(model.getBoundary());
         view.repaintGamePanel();
     }
 
-    private void calculateNeighbours()
+    public synchronized void changeBoundary(Boundary boundary)
     {
-        for(int r = 0; r < model.getGrid().length; r++)
+        model.setBoundary(boundary);
+        view.selectEngine(model.getEngine());
+        view.repaintGamePanel();
+    }
+
+    public synchronized void changeUniverseSize(String size)
+    {
+        try
         {
-            for(int c = 0; c < model.getGrid()[r].length; c++)
-            {
-                if(r == model.getGrid().length - 1 && c == model.getGrid().length - 1)
-                {
-                    if(model.getGrid()[r - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-                else if(r == 0 && c == 0)
-                {
-                    if(model.getGrid()[r + 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-                else if(r == 0 && c == model.getGrid().length - 1)
-                {
-                    if(model.getGrid()[r][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-                else if(r == model.getGrid().length - 1 && c == 0)
-                {
-                    if(model.getGrid()[r - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-                else if(r == model.getGrid().length - 1)
-                {
-                    if(model.getGrid()[r][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[0][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-                else if(c == model.getGrid().length - 1)
-                {
-                    if(model.getGrid()[r + 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][0].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-                else if(r == 0)
-                {
-                    if(model.getGrid()[r][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[model.getGrid().length - 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-                else if(c == 0)
-                {
-                    if(model.getGrid()[r + 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][model.getGrid()[r].length - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-                else
-                {
-                    if(model.getGrid()[r + 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r - 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c + 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                    if(model.getGrid()[r + 1][c - 1].isLiving())
-                        model.getGrid()[r][c].incrementNeighbours();
-                }
-            }
+            String[] parts = size.toLowerCase().split("x");
+            if(parts.length != 2)
+                throw new IllegalArgumentException("Expected width x height: " + size);
+            model.setUniverseSize(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        } catch(IllegalArgumentException ex)
+        {
+            view.showUniverseSizeError(ex);
+            return;
+        }
+        resetGeneration();
+        view.repaintGamePanel();
+    }
+
+    public synchronized void placeSoup(String seed)
+    {
+        try
+        {
+            model.placeSoup(SoupSearch.Replay.parse(seed));
+        } catch(IllegalArgumentException ex)
+        {
+            view.showSoupSeedError(ex);
+            return;
         }
+        view.selectEngine(model.getEngine());
+        view.selectBoundary(model.getBoundary());
+        resetGeneration();
+        view.repaintGamePanel();
     }
 
-    private void calculateNextState()
+    public void classifyObjects()
     {
-        for(int r = 0; r < model.getGrid().length; r++)
+        java.util.List<ObjectClassifier.DetectedObject> objects;
+        long start = System.nanoTime();
+        synchronized(this)
         {
-            for(int c = 0; c < model.getGrid()[r].length; c++)
-            {
-                if(model.getGrid()[r][c].isLiving())
-                {
-                    if(model.getGrid()[r][c].getNeighbours() == 2 || model.getGrid()[r][c].getNeighbours() == 3)
-                        model.getGrid()[r][c].setNextState(true);
-                } else
-                {
-                    if(model.getGrid()[r][c].getNeighbours() == 3)
-                        model.getGrid()[r][c].setNextState(true);
-                }
-            }
+            objects = model.classifyObjects();
         }
+        view.showObjects(objects, (System.nanoTime() - start) / 1000000);
     }
 
-    private void simulateNextState()
+    public synchronized void importPattern(File file)
     {
-        for(int r = 0; r < model.getGrid().length; r++)
+        try
         {
-            for(int c = 0; c < model.getGrid()[r].length; c++)
-            {
-                model.getGrid()[r][c].setLiving(model.getGrid()[r][c].willLive());
-                model.getGrid()[r][c].setNextState(false);
-                model.getGrid()[r][c].resetNeighbours();
-            }
+            model.importPattern(PatternFile.load(file));
+        } catch(IOException | RuntimeException ex)
+        {
+            view.showError(ex);
+            return;
         }
+        view.selectEngine(model.getEngine());
+        view.selectBoundary(model.getBoundary());
+        view.updateGenerationCounter(model.getGeneration());
+        view.repaintGamePanel();
     }
 
-    private void addPattern(char[][] pattern)
+    public synchronized void exportPattern(File file)
     {
-        Point center = new Point(((model.getGrid().length - 1) / 2) - pattern.length / 2, (model.getGrid()[0].length - 1) / 2 - pattern[0].length / 2);
-        for(int r = 0; r < pattern.length; r++)
+        try
         {
-            for(int c = 0; c < pattern[r].length; c++)
-            {
-                if(pattern[r][c] == 'Y')
-                    model.getGrid()[center.x + c][center.y + r].setLiving(true);
-            }
+            PatternFile.save(file, model.getGrid(), model.getGeneration());
+        } catch(IOException ex)
+        {
+            view.showExportError(ex);
+        }
+    }
+
+    public synchronized void resumeMapped(File file)
+    {
+        try
+        {
+            model.resumeMapped(file);
+        } catch(RuntimeException ex)
+        {
+            view.showError(ex);
+            return;
+        }
+        view.selectEngine(model.getEngine());
+        view.selectBoundary(model.getBoundary());
+        view.updateGenerationCounter(model.getGeneration());
+        view.repaintGamePanel();
+    }
+
+    public synchronized void changeRule(String rulestring)
+    {
+        try
+        {
+            model.setRule(Rule.parse(rulestring));
+            view.selectEngine(model.getEngine());
+            view.selectRecordHistory(model.isHistoryEnabled());
+        } catch(IllegalArgumentException ex)
+        {
+            view.showRuleError(ex);
+        }
+    }
+
+    public synchronized void stepBack()
+    {
+        if(model.stepBack())
+        {
+            view.updateGenerationCounter(model.getGeneration());
+            view.repaintGamePanel();
+        }
+    }
+
+    public synchronized void goToGeneration(String generation)
+    {
+        long target;
+        try
+        {
+            target = Long.parseLong(generation.trim());
+        } catch(NumberFormatException ex)
+        {
+            view.showHistoryError("Not a generation number: " + generation);
+            return;
+        }
+        if(!model.jumpToGeneration(target))
+        {
+            view.showHistoryError("Generation " + target + " is not in the history. " + model.getHistoryRange() + ".");
+            return;
+        }
+        view.updateGenerationCounter(model.getGeneration());
+        view.repaintGamePanel();
+    }
+
+    public synchronized void simulateGeneration()
+    {
+        view.updateGenerationCounter(model.step(), model.getCycleStatus());
+        if(!isStarted)
+            model.publishGenerationStats();
+        view.updateEngineStatistics(model.getEngineStatistics());
+        view.repaintGamePanel();
+    }
+
+    private synchronized void addPattern(String name)
+    {
+        try
+        {
+            model.addPattern(name);
+        } catch(IllegalArgumentException ex)
+        {
+            view.showError(ex);
         }
     }
 
@@ -1993,14 +2717,17 @@ class Controller
             int y = e.getY() / model.getSize();
             x -= model.getCamX() / model.getSize();
             y -= model.getCamY() / model.getSize();
-            if(x < 0)
-                x = 0;
-            else if(x > model.getGrid().length - 1)
-                x = model.getGrid().length - 1;
-            if(y < 0)
-                y = 0;
-            else if(y > model.getGrid()[0].length - 1)
-                y = model.getGrid()[0].length - 1;
+            if(model.isBounded())
+            {
+                if(x < 0)
+                    x = 0;
+                else if(x > model.getGridWidth() - 1)
+                    x = model.getGridWidth() - 1;
+                if(y < 0)
+                    y = 0;
+                else if(y > model.getGridHeight() - 1)
+                    y = model.getGridHeight() - 1;
+            }
             model.setLiving(x, y, leftClick);
             view.repaintGamePanel();
         }
@@ -2046,6 +2773,12 @@ class KeyController extends KeyAdapter
             controller.simulateGeneration();
         if(e.getKeyCode() == KeyEvent.VK_ENTER)
             controller.startStopGeneration();
+        if(e.getKeyCode() == KeyEvent.VK_BACK_SPACE)
+            controller.stepBack();
+        if(e.getKeyCode() == KeyEvent.VK_OPEN_BRACKET)
+            model.setStepExponent(model.getStepExponent() - 1);
+        if(e.getKeyCode() == KeyEvent.VK_CLOSE_BRACKET)
+            model.setStepExponent(model.getStepExponent() + 1);
         if(e.getKeyCode() == KeyEvent.VK_G)
         {
             view.toggleGrid(model.gridVisible());
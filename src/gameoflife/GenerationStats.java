@@ -0,0 +1,107 @@
+package gameoflife;
+
+class GenerationStats
+{
+    private final long generation;
+    private final long population;
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+    private final long births;
+    private final long deaths;
+    private final long checksum;
+
+    public GenerationStats(long generation, long population, int minX, int minY, int maxX, int maxY, long births, long deaths, long checksum)
+    {
+        this.generation = generation;
+        this.population = population;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.births = births;
+        this.deaths = deaths;
+        this.checksum = checksum;
+    }
+
+    public static GenerationStats scan(StepEngine engine, long generation)
+    {
+        long[] population = new long[1];
+        int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        engine.forEachLiving(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                population[0]++;
+                box[0] = Math.min(box[0], x);
+                box[1] = Math.min(box[1], y);
+                box[2] = Math.max(box[2], x);
+                box[3] = Math.max(box[3], y);
+            }
+        });
+        return new GenerationStats(generation, population[0], box[0], box[1], box[2], box[3], -1, -1, engine.getStateHash());
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    public long getPopulation()
+    {
+        return population;
+    }
+
+    public boolean isEmpty()
+    {
+        return population == 0;
+    }
+
+    public int getMinX()
+    {
+        return minX;
+    }
+
+    public int getMinY()
+    {
+        return minY;
+    }
+
+    public int getMaxX()
+    {
+        return maxX;
+    }
+
+    public int getMaxY()
+    {
+        return maxY;
+    }
+
+    public long getBirths()
+    {
+        return births;
+    }
+
+    public long getDeaths()
+    {
+        return deaths;
+    }
+
+    public long getChecksum()
+    {
+        return checksum;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder("Generation ").append(generation).append(": population ").append(population);
+        if(!isEmpty())
+            text.append(", box (").append(minX).append(",").append(minY).append(")-(").append(maxX).append(",").append(maxY).append(")");
+        if(births >= 0)
+            text.append(", births ").append(births).append(", deaths ").append(deaths);
+        return text.append(String.format(", checksum %016x", checksum)).toString();
+    }
+}
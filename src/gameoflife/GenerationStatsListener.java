@@ -0,0 +1,6 @@
+package gameoflife;
+
+interface GenerationStatsListener
+{
+    void generationComputed(GenerationStats stats);
+}
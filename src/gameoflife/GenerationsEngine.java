@@ -0,0 +1,158 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+class GenerationsEngine implements StepEngine, RowKernel
+{
+    private int width;
+    private int height;
+    private int stride;
+    private byte[] cells;
+    private byte[] next;
+    private Rule rule = Rule.CONWAY;
+    private byte[] table = rule.generationsTable();
+    private final StripeStepper stepper = new StripeStepper();
+
+    public GenerationsEngine()
+    {
+        resize(0, 0);
+    }
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.GENERATIONS;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        stride = (width + 1) & ~1;
+        cells = new byte[(stride * height) >>> 1];
+        next = new byte[cells.length];
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(cells, (byte) 0);
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        return getState(x, y) == 1;
+    }
+
+    public int getState(int x, int y)
+    {
+        int i = y * stride + x;
+        return (cells[i >>> 1] >>> ((i & 1) << 2)) & 0xF;
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        setState(cells, y * stride + x, living ? 1 : 0);
+    }
+
+    private static void setState(byte[] buffer, int i, int state)
+    {
+        int shift = (i & 1) << 2;
+        buffer[i >>> 1] = (byte) ((buffer[i >>> 1] & ~(0xF << shift)) | (state << shift));
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+        table = rule.generationsTable();
+    }
+
+    @Override
+    public boolean supports(Rule rule)
+    {
+        return true;
+    }
+
+    @Override
+    public int getParallelism()
+    {
+        return stepper.getParallelism();
+    }
+
+    @Override
+    public void setParallelism(int parallelism)
+    {
+        stepper.setParallelism(parallelism);
+    }
+
+    @Override
+    public void step()
+    {
+        if(width == 0 || height == 0)
+            return;
+        stepper.run(height, this);
+        byte[] swap = cells;
+        cells = next;
+        next = swap;
+    }
+
+    @Override
+    public void stepRows(int from, int to)
+    {
+        byte[] up = new byte[width + 2];
+        byte[] mid = new byte[width + 2];
+        byte[] down = new byte[width + 2];
+        byte[] states = new byte[width];
+        for(int y = from; y < to; y++)
+        {
+            unpackLiving((y == 0 ? height - 1 : y - 1), up, null);
+            unpackLiving(y, mid, states);
+            unpackLiving((y == height - 1 ? 0 : y + 1), down, null);
+            int row = y * stride;
+            for(int x = 0; x < width; x++)
+            {
+                int sum = up[x] + up[x + 1] + up[x + 2] + mid[x] + mid[x + 2] + down[x] + down[x + 1] + down[x + 2];
+                setState(next, row + x, table[(states[x] << 4) | sum]);
+            }
+        }
+    }
+
+    private void unpackLiving(int y, byte[] living, byte[] states)
+    {
+        int row = y * stride;
+        for(int x = 0; x < width; x++)
+        {
+            int i = row + x;
+            int state = (cells[i >>> 1] >>> ((i & 1) << 2)) & 0xF;
+            living[x + 1] = (byte) (state == 1 ? 1 : 0);
+            if(states != null)
+                states[x] = (byte) state;
+        }
+        living[0] = living[width];
+        living[width + 1] = living[1];
+    }
+}
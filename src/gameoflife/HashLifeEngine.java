@@ -0,0 +1,570 @@
+package gameoflife;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+class HashLifeEngine implements StepEngine
+{
+    private static final int BYTES_PER_NODE = 160;
+    private static final int MAX_STEP_EXPONENT = 60;
+    private static final long X_BASE = 0x9E3779B97F4A7C15L;
+    private static final long Y_BASE = 0xC2B2AE3D27D4EB4FL;
+    private static final long[] X_POWERS = powers(X_BASE);
+    private static final long[] Y_POWERS = powers(Y_BASE);
+    private static final long[] X_INVERSE_POWERS = powers(inverse(X_BASE));
+    private static final long[] Y_INVERSE_POWERS = powers(inverse(Y_BASE));
+
+    private final Map<Node, Node> table = new HashMap<>();
+    private final Node dead = new Node(false);
+    private final Node alive = new Node(true);
+    private Node[] empty = new Node[64];
+    private Node root;
+    private int width;
+    private int height;
+    private int stepExponent = 0;
+    private int resultExponent = -1;
+    private long maxNodes = Runtime.getRuntime().maxMemory() / 4 / BYTES_PER_NODE;
+    private int markEpoch = 0;
+    private long collections = 0;
+    private Rule rule = Rule.CONWAY;
+
+    public HashLifeEngine()
+    {
+        resize(0, 0);
+    }
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.HASHLIFE;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        clear();
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public boolean isBounded()
+    {
+        return false;
+    }
+
+    @Override
+    public void clear()
+    {
+        table.clear();
+        empty = new Node[64];
+        resultExponent = -1;
+        root = empty(3);
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        Node node = root;
+        long half = 1L << (root.level - 1);
+        if(x < -half || x >= half || y < -half || y >= half)
+            return false;
+        long cx = x + half;
+        long cy = y + half;
+        while(node.level > 0)
+        {
+            if(node.population == 0)
+                return false;
+            long quarter = 1L << (node.level - 1);
+            boolean east = cx >= quarter;
+            boolean south = cy >= quarter;
+            node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+            if(east)
+                cx -= quarter;
+            if(south)
+                cy -= quarter;
+        }
+        return node == alive;
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        while(!contains(root, x, y))
+            root = expand(root);
+        long half = 1L << (root.level - 1);
+        root = set(root, x + half, y + half, living);
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+        resultExponent = -1;
+    }
+
+    @Override
+    public int getStepExponent()
+    {
+        return stepExponent;
+    }
+
+    @Override
+    public void setStepExponent(int stepExponent)
+    {
+        this.stepExponent = Math.max(0, Math.min(MAX_STEP_EXPONENT, stepExponent));
+    }
+
+    public long getPopulation()
+    {
+        return root.population;
+    }
+
+    /**
+     * Hashes the living cells by their position. Each node caches the sum of X_BASE^x * Y_BASE^y over its cells
+     * relative to its corner, so the root's sum only needs moving to the origin.
+     */
+    @Override
+    public long getStateHash()
+    {
+        int level = root.level - 1;
+        return Zobrist.mix(root.cells * X_INVERSE_POWERS[level] * Y_INVERSE_POWERS[level]);
+    }
+
+    /**
+     * Reads the population and bounds from the root rather than visiting every cell. Bounds are cached per node, so
+     * after a step only the nodes created by it are examined.
+     */
+    @Override
+    public GenerationStats getGenerationStats(long generation)
+    {
+        if(root.population == 0)
+            return new GenerationStats(generation, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, -1, -1, getStateHash());
+        bound(root);
+        long half = 1L << (root.level - 1);
+        return new GenerationStats(generation, root.population, (int) (root.minX - half), (int) (root.minY - half),
+                (int) (root.maxX - half), (int) (root.maxY - half), -1, -1, getStateHash());
+    }
+
+    private static void bound(Node node)
+    {
+        if(node.minX >= 0)
+            return;
+        long quarter = 1L << (node.level - 1);
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        Node[] quadrants = {node.nw, node.ne, node.sw, node.se};
+        for(int q = 0; q < 4; q++)
+        {
+            Node quadrant = quadrants[q];
+            if(quadrant.population == 0)
+                continue;
+            bound(quadrant);
+            long x = (q & 1) != 0 ? quarter : 0;
+            long y = (q & 2) != 0 ? quarter : 0;
+            minX = Math.min(minX, quadrant.minX + x);
+            minY = Math.min(minY, quadrant.minY + y);
+            maxX = Math.max(maxX, quadrant.maxX + x);
+            maxY = Math.max(maxY, quadrant.maxY + y);
+        }
+        node.minY = minY;
+        node.maxX = maxX;
+        node.maxY = maxY;
+        node.minX = minX;
+    }
+
+    private static long[] powers(long base)
+    {
+        long[] powers = new long[64];
+        powers[0] = base;
+        for(int k = 1; k < powers.length; k++)
+            powers[k] = powers[k - 1] * powers[k - 1];
+        return powers;
+    }
+
+    /**
+     * Returns the multiplicative inverse of an odd number modulo 2^64 by Newton's iteration.
+     */
+    private static long inverse(long odd)
+    {
+        long inverse = odd;
+        for(int i = 0; i < 5; i++)
+            inverse *= 2 - odd * inverse;
+        return inverse;
+    }
+
+    public long getNodeCount()
+    {
+        return table.size();
+    }
+
+    public long getCollections()
+    {
+        return collections;
+    }
+
+    public void setMemoryBudget(long bytes)
+    {
+        maxNodes = Math.max(1024, bytes / BYTES_PER_NODE);
+    }
+
+    /**
+     * Replaces the universe with a Macrocell quadtree. Shared nodes stay shared, so a pattern far larger than any
+     * bounded grid loads in time proportional to the size of the file rather than the number of cells.
+     */
+    public void load(Macrocell macrocell)
+    {
+        clear();
+        Node[] nodes = new Node[macrocell.getNodeCount()];
+        for(int i = 1; i < nodes.length; i++)
+        {
+            int level = macrocell.getLevel(i);
+            if(macrocell.isLeaf(i))
+                nodes[i] = leaf(macrocell.getLeaf(i), 0, 0, level);
+            else
+            {
+                Node[] quadrants = new Node[4];
+                for(int q = 0; q < 4; q++)
+                {
+                    int child = macrocell.getChild(i, q);
+                    quadrants[q] = child == 0 ? empty(level - 1) : nodes[child];
+                }
+                nodes[i] = join(quadrants[0], quadrants[1], quadrants[2], quadrants[3]);
+            }
+        }
+        root = nodes[macrocell.getRoot()];
+        while(root.level < 3)
+            root = expand(root);
+    }
+
+    /**
+     * Returns the universe as a Macrocell quadtree, writing each distinct node once.
+     */
+    public Macrocell toMacrocell(long generation)
+    {
+        Node top = root;
+        while(top.level <= Macrocell.LEAF_LEVEL)
+            top = expand(top);
+        Macrocell.Builder builder = new Macrocell.Builder();
+        int index = export(top, builder, new IdentityHashMap<Node, Integer>());
+        return builder.build(index, top.level, rule, generation);
+    }
+
+    private int export(Node node, Macrocell.Builder builder, Map<Node, Integer> indices)
+    {
+        if(node.population == 0)
+            return 0;
+        Integer known = indices.get(node);
+        if(known != null)
+            return known;
+        int index;
+        if(node.level == Macrocell.LEAF_LEVEL)
+            index = builder.leaf(leafBits(node, 0, 0));
+        else
+            index = builder.node(node.level, export(node.nw, builder, indices), export(node.ne, builder, indices),
+                    export(node.sw, builder, indices), export(node.se, builder, indices));
+        indices.put(node, index);
+        return index;
+    }
+
+    private Node leaf(long bits, int x, int y, int level)
+    {
+        if(level == 0)
+            return (bits >>> (8 * y + x) & 1) != 0 ? alive : dead;
+        int half = 1 << (level - 1);
+        return join(leaf(bits, x, y, level - 1), leaf(bits, x + half, y, level - 1), leaf(bits, x, y + half, level - 1), leaf(bits, x + half, y + half, level - 1));
+    }
+
+    private long leafBits(Node node, int x, int y)
+    {
+        if(node.level == 0)
+            return node == alive ? 1L << (8 * y + x) : 0;
+        if(node.population == 0)
+            return 0;
+        int half = 1 << (node.level - 1);
+        return leafBits(node.nw, x, y) | leafBits(node.ne, x + half, y) | leafBits(node.sw, x, y + half) | leafBits(node.se, x + half, y + half);
+    }
+
+    @Override
+    public void step()
+    {
+        if(table.size() > maxNodes)
+            collect();
+        if(resultExponent != stepExponent)
+        {
+            for(Node node : table.values())
+                node.result = null;
+            resultExponent = stepExponent;
+        }
+        while(root.level < stepExponent + 3 || !isPadded(root))
+            root = expand(root);
+        root = successor(root, stepExponent);
+    }
+
+    @Override
+    public void forEachLiving(int minX, int minY, int maxX, int maxY, CellVisitor visitor)
+    {
+        long half = 1L << (root.level - 1);
+        visit(root, -half, -half, minX, minY, maxX, maxY, visitor);
+    }
+
+    private void visit(Node node, long x, long y, int minX, int minY, int maxX, int maxY, CellVisitor visitor)
+    {
+        long size = 1L << node.level;
+        if(node.population == 0 || x > maxX || y > maxY || x + size <= minX || y + size <= minY)
+            return;
+        if(node.level == 0)
+        {
+            visitor.visit((int) x, (int) y);
+            return;
+        }
+        long quarter = size >>> 1;
+        visit(node.nw, x, y, minX, minY, maxX, maxY, visitor);
+        visit(node.ne, x + quarter, y, minX, minY, maxX, maxY, visitor);
+        visit(node.sw, x, y + quarter, minX, minY, maxX, maxY, visitor);
+        visit(node.se, x + quarter, y + quarter, minX, minY, maxX, maxY, visitor);
+    }
+
+    private boolean contains(Node node, long x, long y)
+    {
+        long half = 1L << (node.level - 1);
+        return x >= -half && x < half && y >= -half && y < half;
+    }
+
+    private Node set(Node node, long x, long y, boolean living)
+    {
+        if(node.level == 0)
+            return living ? alive : dead;
+        long quarter = 1L << (node.level - 1);
+        if(x < quarter)
+        {
+            if(y < quarter)
+                return join(set(node.nw, x, y, living), node.ne, node.sw, node.se);
+            return join(node.nw, node.ne, set(node.sw, x, y - quarter, living), node.se);
+        }
+        if(y < quarter)
+            return join(node.nw, set(node.ne, x - quarter, y, living), node.sw, node.se);
+        return join(node.nw, node.ne, node.sw, set(node.se, x - quarter, y - quarter, living));
+    }
+
+    private boolean isPadded(Node node)
+    {
+        return node.nw.population == node.nw.se.se.population
+                && node.ne.population == node.ne.sw.sw.population
+                && node.sw.population == node.sw.ne.ne.population
+                && node.se.population == node.se.nw.nw.population;
+    }
+
+    private Node expand(Node node)
+    {
+        Node border = empty(node.level - 1);
+        return join(join(border, border, border, node.nw),
+                join(border, border, node.ne, border),
+                join(border, node.sw, border, border),
+                join(node.se, border, border, border));
+    }
+
+    private Node empty(int level)
+    {
+        if(level == 0)
+            return dead;
+        if(empty[level] == null)
+        {
+            Node child = empty(level - 1);
+            empty[level] = join(child, child, child, child);
+        }
+        return empty[level];
+    }
+
+    private Node join(Node nw, Node ne, Node sw, Node se)
+    {
+        Node key = new Node(nw, ne, sw, se);
+        Node node = table.get(key);
+        if(node == null)
+        {
+            table.put(key, key);
+            node = key;
+        }
+        return node;
+    }
+
+    private Node centre(Node node)
+    {
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    private Node successor(Node node, int exponent)
+    {
+        if(node.population == 0)
+            return empty(node.level - 1);
+        if(node.result != null)
+            return node.result;
+        Node result;
+        if(node.level == 2)
+            result = baseCase(node);
+        else
+        {
+            Node[][] g = {
+                    {node.nw.nw, node.nw.ne, node.ne.nw, node.ne.ne},
+                    {node.nw.sw, node.nw.se, node.ne.sw, node.ne.se},
+                    {node.sw.nw, node.sw.ne, node.se.nw, node.se.ne},
+                    {node.sw.sw, node.sw.se, node.se.sw, node.se.se}
+            };
+            boolean full = exponent >= node.level - 2;
+            Node[][] m = new Node[3][3];
+            for(int i = 0; i < 3; i++)
+            {
+                for(int j = 0; j < 3; j++)
+                {
+                    Node sub = join(g[i][j], g[i][j + 1], g[i + 1][j], g[i + 1][j + 1]);
+                    m[i][j] = full ? successor(sub, exponent) : centre(sub);
+                }
+            }
+            result = join(successor(join(m[0][0], m[0][1], m[1][0], m[1][1]), exponent),
+                    successor(join(m[0][1], m[0][2], m[1][1], m[1][2]), exponent),
+                    successor(join(m[1][0], m[1][1], m[2][0], m[2][1]), exponent),
+                    successor(join(m[1][1], m[1][2], m[2][1], m[2][2]), exponent));
+        }
+        node.result = result;
+        return result;
+    }
+
+    private Node baseCase(Node node)
+    {
+        int bits = 0;
+        for(int y = 0; y < 4; y++)
+            for(int x = 0; x < 4; x++)
+                if(leaf(node, x, y))
+                    bits |= 1 << (y * 4 + x);
+        return join(cell(bits, 1, 1), cell(bits, 2, 1), cell(bits, 1, 2), cell(bits, 2, 2));
+    }
+
+    private boolean leaf(Node node, int x, int y)
+    {
+        Node quadrant = y < 2 ? (x < 2 ? node.nw : node.ne) : (x < 2 ? node.sw : node.se);
+        Node cell = (y & 1) == 0 ? ((x & 1) == 0 ? quadrant.nw : quadrant.ne) : ((x & 1) == 0 ? quadrant.sw : quadrant.se);
+        return cell == alive;
+    }
+
+    private Node cell(int bits, int x, int y)
+    {
+        int neighbours = 0;
+        for(int dy = -1; dy <= 1; dy++)
+            for(int dx = -1; dx <= 1; dx++)
+                if((dx != 0 || dy != 0) && (bits & (1 << ((y + dy) * 4 + x + dx))) != 0)
+                    neighbours++;
+        boolean living = (bits & (1 << (y * 4 + x))) != 0;
+        return rule.nextState(living, neighbours) ? alive : dead;
+    }
+
+    private void collect()
+    {
+        markEpoch++;
+        mark(root);
+        for(Node node : empty)
+            if(node != null)
+                mark(node);
+        Iterator<Node> nodes = table.values().iterator();
+        while(nodes.hasNext())
+        {
+            Node node = nodes.next();
+            if(node.mark != markEpoch)
+                nodes.remove();
+            else
+                node.result = null;
+        }
+        collections++;
+    }
+
+    private void mark(Node node)
+    {
+        if(node.level == 0 || node.mark == markEpoch)
+            return;
+        node.mark = markEpoch;
+        mark(node.nw);
+        mark(node.ne);
+        mark(node.sw);
+        mark(node.se);
+    }
+
+    private static class Node
+    {
+        final Node nw;
+        final Node ne;
+        final Node sw;
+        final Node se;
+        final int level;
+        final long population;
+        final int hash;
+        final long cells;
+        long minX = -1;
+        long minY;
+        long maxX;
+        long maxY;
+        Node result;
+        int mark;
+
+        Node(boolean living)
+        {
+            nw = ne = sw = se = null;
+            level = 0;
+            population = living ? 1 : 0;
+            hash = living ? 1 : 0;
+            cells = living ? 1 : 0;
+            if(living)
+                minX = minY = maxX = maxY = 0;
+        }
+
+        Node(Node nw, Node ne, Node sw, Node se)
+        {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            level = nw.level + 1;
+            population = nw.population + ne.population + sw.population + se.population;
+            int h = System.identityHashCode(nw);
+            h = h * 31 + System.identityHashCode(ne);
+            h = h * 31 + System.identityHashCode(sw);
+            hash = h * 31 + System.identityHashCode(se);
+            long x = X_POWERS[level - 1];
+            cells = nw.cells + x * ne.cells + Y_POWERS[level - 1] * (sw.cells + x * se.cells);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof Node))
+                return false;
+            Node n = (Node) o;
+            return nw == n.nw && ne == n.ne && sw == n.sw && se == n.se;
+        }
+    }
+}
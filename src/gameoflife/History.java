@@ -0,0 +1,427 @@
+package gameoflife;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Keeps past generations of a bounded two-state universe so the simulation can be scrubbed backwards. Each generation
+ * is stored as the XOR of its bitmap with the previous one, with a full keyframe every keyframeInterval generations or
+ * sooner once the deltas since the last keyframe add up to a keyframe's size. Restoring a generation therefore
+ * decodes one keyframe and at most about one keyframe's worth of deltas, however chaotic the universe is. A delta row
+ * is written as a mask of the changed words in every 64 followed by those words, and frames may be deflated. Frames
+ * are streamed a row at a time through the engine's row API. The frames live in a ring that drops its oldest
+ * keyframe group whenever the byte budget is exceeded.
+ */
+class History
+{
+    public static final long DEFAULT_BUDGET = 64L << 20;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+
+    private static final byte KEYFRAME = 0;
+    private static final byte DELTA = 1;
+    private static final int FRAME_OVERHEAD = 48;
+
+    private final long budget;
+    private final int keyframeInterval;
+    private final boolean compress;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private Frame[] ring = new Frame[64];
+    private int head;
+    private int size;
+    private long bytes;
+    private int width = -1;
+    private int height = -1;
+    private int words;
+    private long[] row;
+    private long[] previous;
+    private OffHeapArena arena;
+    private OffHeapGrid last;
+    private boolean primed;
+    private int sinceKeyframe;
+    private long deltaBytes;
+
+    public History()
+    {
+        this(DEFAULT_BUDGET, DEFAULT_KEYFRAME_INTERVAL, true);
+    }
+
+    public History(long budget, int keyframeInterval, boolean compress)
+    {
+        this.budget = budget;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.compress = compress;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(ring, null);
+        deltaBytes = 0;
+        head = 0;
+        size = 0;
+        bytes = 0;
+        primed = false;
+        last = null;
+        if(arena != null)
+            arena.close();
+        arena = null;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int getFrameCount()
+    {
+        return size;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getOldestGeneration()
+    {
+        return size == 0 ? -1 : frame(0).generation;
+    }
+
+    public long getNewestGeneration()
+    {
+        return size == 0 ? -1 : frame(size - 1).generation;
+    }
+
+    public boolean contains(long generation)
+    {
+        return indexOf(generation) >= 0;
+    }
+
+    /**
+     * Returns the newest recorded generation before the given one, or -1 if there is none.
+     */
+    public long previousGeneration(long generation)
+    {
+        int low = 0;
+        int high = size - 1;
+        long found = -1;
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            long g = frame(mid).generation;
+            if(g < generation)
+            {
+                found = g;
+                low = mid + 1;
+            } else
+                high = mid - 1;
+        }
+        return found;
+    }
+
+    /**
+     * Returns true if the grid's universe can be recorded: it must be bounded and have two-state cells.
+     */
+    public static boolean supports(StepEngine grid)
+    {
+        return grid.isBounded() && !grid.getRule().isGenerations();
+    }
+
+    /**
+     * Records the state of the grid as the given generation. Frames at or after that generation are discarded first,
+     * so recording after going back in time starts a new branch. The grid is read a row at a time, so apart from the
+     * frames the only copy of the universe is the previous generation, kept off the heap.
+     */
+    public void record(StepEngine grid, long generation)
+    {
+        if(!supports(grid) || grid.getWidth() == 0 || grid.getHeight() == 0)
+        {
+            clear();
+            return;
+        }
+        if(grid.getWidth() != width || grid.getHeight() != height)
+        {
+            clear();
+            width = grid.getWidth();
+            height = grid.getHeight();
+            words = (width + 63) >>> 6;
+            row = new long[words];
+            previous = new long[words];
+        }
+        while(size > 0 && frame(size - 1).generation >= generation)
+        {
+            bytes -= frame(size - 1).cost();
+            ring[(head + size - 1) % ring.length] = null;
+            size--;
+            primed = false;
+        }
+        if(last == null)
+        {
+            arena = new OffHeapArena();
+            last = new OffHeapGrid(arena, words, height);
+        }
+        boolean keyframe = !primed || sinceKeyframe + 1 >= keyframeInterval || deltaBytes >= (long) words * height * 8;
+        FrameWriter out = new FrameWriter(keyframe ? KEYFRAME : DELTA, generation);
+        for(int y = 0; y < height; y++)
+        {
+            grid.readRow(y, row);
+            if(keyframe)
+                out.writeWords(row, 0, words);
+            else
+            {
+                last.readRow(y, previous);
+                for(int group = 0; group < words; group += 64)
+                {
+                    int end = Math.min(words, group + 64);
+                    long changed = 0;
+                    for(int i = group; i < end; i++)
+                    {
+                        previous[i] ^= row[i];
+                        if(previous[i] != 0)
+                            changed |= 1L << (i - group);
+                    }
+                    out.writeLong(changed);
+                    for(int i = group; i < end; i++)
+                        if(previous[i] != 0)
+                            out.writeLong(previous[i]);
+                }
+            }
+            last.writeRow(y, row);
+        }
+        Frame frame = out.finish();
+        if(keyframe)
+        {
+            sinceKeyframe = 0;
+            deltaBytes = 0;
+        } else
+        {
+            sinceKeyframe++;
+            deltaBytes += frame.length;
+        }
+        primed = true;
+        push(frame);
+        boolean dropped = true;
+        while(bytes > budget && dropped)
+            dropped = dropOldestGroup();
+    }
+
+    /**
+     * Puts the grid back into a recorded generation. Returns false if the generation is no longer in the buffer or
+     * the grid has been resized since. The keyframe and its deltas are decoded side by side a row at a time, and
+     * each row is written to the grid as soon as it is complete.
+     */
+    public boolean restore(StepEngine grid, long generation)
+    {
+        int index = indexOf(generation);
+        if(index < 0 || grid.getWidth() != width || grid.getHeight() != height)
+            return false;
+        int keyframe = index;
+        while(frame(keyframe).type != KEYFRAME)
+            keyframe--;
+        DataInputStream[] in = new DataInputStream[index - keyframe + 1];
+        for(int i = 0; i < in.length; i++)
+            in[i] = frame(keyframe + i).open();
+        try
+        {
+            for(int y = 0; y < height; y++)
+            {
+                for(int i = 0; i < words; i++)
+                    row[i] = in[0].readLong();
+                for(int f = 1; f < in.length; f++)
+                {
+                    for(int group = 0; group < words; group += 64)
+                    {
+                        long changed = in[f].readLong();
+                        while(changed != 0)
+                        {
+                            row[group + Long.numberOfTrailingZeros(changed)] ^= in[f].readLong();
+                            changed &= changed - 1;
+                        }
+                    }
+                }
+                grid.writeRow(y, row);
+            }
+        } catch(IOException e)
+        {
+            throw new IllegalStateException("Corrupt history frame for generation " + generation, e);
+        } finally
+        {
+            for(DataInputStream stream : in)
+            {
+                try
+                {
+                    stream.close();
+                } catch(IOException e)
+                {
+                    // Nothing is lost: the frames are in memory.
+                }
+            }
+        }
+        return true;
+    }
+
+    private Frame frame(int index)
+    {
+        return ring[(head + index) % ring.length];
+    }
+
+    private int indexOf(long generation)
+    {
+        int low = 0;
+        int high = size - 1;
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            long g = frame(mid).generation;
+            if(g == generation)
+                return mid;
+            if(g < generation)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return -1;
+    }
+
+    private void push(Frame frame)
+    {
+        if(size == ring.length)
+        {
+            Frame[] grown = new Frame[ring.length * 2];
+            for(int i = 0; i < size; i++)
+                grown[i] = frame(i);
+            ring = grown;
+            head = 0;
+        }
+        ring[(head + size) % ring.length] = frame;
+        size++;
+        bytes += frame.cost();
+    }
+
+    /**
+     * Drops the oldest keyframe and the deltas that depend on it, keeping at least the newest group.
+     */
+    private boolean dropOldestGroup()
+    {
+        int end = 1;
+        while(end < size && frame(end).type != KEYFRAME)
+            end++;
+        if(end == size)
+            return false;
+        for(int i = 0; i < end; i++)
+        {
+            bytes -= frame(0).cost();
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+        }
+        return true;
+    }
+
+    /**
+     * Encodes a frame as it is written, deflating it on the way when the history is compressed.
+     */
+    private class FrameWriter
+    {
+        private final byte type;
+        private final long generation;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final OutputStream sink;
+        private final byte[] buffer = new byte[8192];
+        private int used;
+        private int length;
+
+        FrameWriter(byte type, long generation)
+        {
+            this.type = type;
+            this.generation = generation;
+            if(compress)
+            {
+                deflater.reset();
+                sink = new DeflaterOutputStream(bytes, deflater, buffer.length);
+            } else
+                sink = bytes;
+        }
+
+        void writeLong(long word)
+        {
+            if(used == buffer.length)
+                flush();
+            for(int shift = 56; shift >= 0; shift -= 8)
+                buffer[used++] = (byte) (word >>> shift);
+            length += 8;
+        }
+
+        void writeWords(long[] words, int from, int to)
+        {
+            for(int i = from; i < to; i++)
+                writeLong(words[i]);
+        }
+
+        Frame finish()
+        {
+            flush();
+            try
+            {
+                if(sink instanceof DeflaterOutputStream)
+                    ((DeflaterOutputStream) sink).finish();
+            } catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            return new Frame(generation, type, length, bytes.toByteArray(), compress);
+        }
+
+        private void flush()
+        {
+            try
+            {
+                sink.write(buffer, 0, used);
+            } catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            used = 0;
+        }
+    }
+
+    private static class Frame
+    {
+        final long generation;
+        final byte type;
+        final int length;
+        final byte[] data;
+        final boolean compressed;
+
+        Frame(long generation, byte type, int length, byte[] data, boolean compressed)
+        {
+            this.generation = generation;
+            this.type = type;
+            this.length = length;
+            this.data = data;
+            this.compressed = compressed;
+        }
+
+        long cost()
+        {
+            return data.length + FRAME_OVERHEAD;
+        }
+
+        DataInputStream open()
+        {
+            InputStream in = new ByteArrayInputStream(data);
+            if(compressed)
+                in = new InflaterInputStream(in);
+            return new DataInputStream(new BufferedInputStream(in, 8192));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+class LongHashSet
+{
+    static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int size;
+    private int mask;
+
+    public LongHashSet()
+    {
+        this(16);
+    }
+
+    public LongHashSet(int expected)
+    {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    public static long pack(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    public static int unpackX(long key)
+    {
+        return (int) (key >> 32);
+    }
+
+    public static int unpackY(long key)
+    {
+        return (int) key;
+    }
+
+    static int hash(long key)
+    {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains(long key)
+    {
+        for(int i = hash(key) & mask; ; i = (i + 1) & mask)
+        {
+            if(keys[i] == key)
+                return true;
+            if(keys[i] == EMPTY)
+                return false;
+        }
+    }
+
+    public boolean add(long key)
+    {
+        if((size + 1) * 2 > keys.length)
+            grow();
+        for(int i = hash(key) & mask; ; i = (i + 1) & mask)
+        {
+            if(keys[i] == key)
+                return false;
+            if(keys[i] == EMPTY)
+            {
+                keys[i] = key;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    public boolean remove(long key)
+    {
+        int i = hash(key) & mask;
+        while(keys[i] != key)
+        {
+            if(keys[i] == EMPTY)
+                return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = EMPTY;
+        size--;
+        for(int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask)
+        {
+            int home = hash(keys[j]) & mask;
+            if(((j - home) & mask) >= ((j - i) & mask))
+            {
+                keys[i] = keys[j];
+                keys[j] = EMPTY;
+                i = j;
+            }
+        }
+        return true;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    public long[] rawKeys()
+    {
+        return keys;
+    }
+
+    private void grow()
+    {
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        Arrays.fill(keys, EMPTY);
+        mask = keys.length - 1;
+        size = 0;
+        for(long key : old)
+            if(key != EMPTY)
+                add(key);
+    }
+}
@@ -0,0 +1,87 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+class LongIntMap
+{
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public LongIntMap(int expected)
+    {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        mask = capacity - 1;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int get(long key)
+    {
+        for(int i = LongHashSet.hash(key) & mask; ; i = (i + 1) & mask)
+        {
+            if(keys[i] == key)
+                return values[i];
+            if(keys[i] == LongHashSet.EMPTY)
+                return 0;
+        }
+    }
+
+    public void addTo(long key, int delta)
+    {
+        if((size + 1) * 2 > keys.length)
+            grow();
+        for(int i = LongHashSet.hash(key) & mask; ; i = (i + 1) & mask)
+        {
+            if(keys[i] == key)
+            {
+                values[i] += delta;
+                return;
+            }
+            if(keys[i] == LongHashSet.EMPTY)
+            {
+                keys[i] = key;
+                values[i] = delta;
+                size++;
+                return;
+            }
+        }
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        size = 0;
+    }
+
+    public long[] rawKeys()
+    {
+        return keys;
+    }
+
+    public int[] rawValues()
+    {
+        return values;
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        mask = keys.length - 1;
+        size = 0;
+        for(int i = 0; i < oldKeys.length; i++)
+            if(oldKeys[i] != LongHashSet.EMPTY)
+                addTo(oldKeys[i], oldValues[i]);
+    }
+}
@@ -0,0 +1,121 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+class LongObjectMap<V>
+{
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public LongObjectMap(int expected)
+    {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        mask = capacity - 1;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        for(int i = LongHashSet.hash(key) & mask; ; i = (i + 1) & mask)
+        {
+            if(keys[i] == key)
+                return (V) values[i];
+            if(keys[i] == LongHashSet.EMPTY)
+                return null;
+        }
+    }
+
+    public boolean containsKey(long key)
+    {
+        return get(key) != null;
+    }
+
+    public void put(long key, V value)
+    {
+        if((size + 1) * 2 > keys.length)
+            grow();
+        for(int i = LongHashSet.hash(key) & mask; ; i = (i + 1) & mask)
+        {
+            if(keys[i] == key)
+            {
+                values[i] = value;
+                return;
+            }
+            if(keys[i] == LongHashSet.EMPTY)
+            {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes a key, shifting later entries of its probe sequence back so that no tombstones are left.
+     */
+    public void remove(long key)
+    {
+        int i = LongHashSet.hash(key) & mask;
+        while(keys[i] != key)
+        {
+            if(keys[i] == LongHashSet.EMPTY)
+                return;
+            i = (i + 1) & mask;
+        }
+        size--;
+        for(int j = (i + 1) & mask; keys[j] != LongHashSet.EMPTY; j = (j + 1) & mask)
+        {
+            int home = LongHashSet.hash(keys[j]) & mask;
+            if(((j - home) & mask) >= ((j - i) & mask))
+            {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = LongHashSet.EMPTY;
+        values[i] = null;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        mask = keys.length - 1;
+        size = 0;
+        for(int i = 0; i < oldKeys.length; i++)
+            if(oldKeys[i] != LongHashSet.EMPTY)
+                insert(oldKeys[i], oldValues[i]);
+    }
+
+    private void insert(long key, Object value)
+    {
+        int i = LongHashSet.hash(key) & mask;
+        while(keys[i] != LongHashSet.EMPTY)
+            i = (i + 1) & mask;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+}
@@ -0,0 +1,225 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+class LookupTableEngine implements StepEngine, RowKernel
+{
+    private static final byte[] CONWAY_TABLE;
+    private static final long CONWAY_TABLE_NANOS;
+
+    static
+    {
+        long start = System.nanoTime();
+        CONWAY_TABLE = buildTable(Rule.CONWAY);
+        CONWAY_TABLE_NANOS = System.nanoTime() - start;
+    }
+
+    private int width;
+    private int height;
+    private int words;
+    private long[][] rows;
+    private long[][] next;
+    private final StripeStepper stepper = new StripeStepper();
+    private Rule rule = Rule.CONWAY;
+    private byte[] table = CONWAY_TABLE;
+    private long tableNanos = CONWAY_TABLE_NANOS;
+
+    public LookupTableEngine()
+    {
+        resize(0, 0);
+    }
+
+    private static byte[] buildTable(Rule rule)
+    {
+        byte[] table = new byte[1 << 16];
+        for(int window = 0; window < table.length; window++)
+        {
+            int result = 0;
+            for(int r = 1; r <= 2; r++)
+            {
+                for(int c = 1; c <= 2; c++)
+                {
+                    int neighbours = 0;
+                    for(int dr = -1; dr <= 1; dr++)
+                        for(int dc = -1; dc <= 1; dc++)
+                            if((dr != 0 || dc != 0) && (window & (1 << ((r + dr) * 4 + c + dc))) != 0)
+                                neighbours++;
+                    boolean living = (window & (1 << (r * 4 + c))) != 0;
+                    if(rule.nextState(living, neighbours))
+                        result |= 1 << ((r - 1) * 2 + (c - 1));
+                }
+            }
+            table[window] = (byte) result;
+        }
+        return table;
+    }
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.LOOKUP;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        rows = new long[height][words];
+        next = new long[height][words];
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public void clear()
+    {
+        for(long[] row : rows)
+            Arrays.fill(row, 0L);
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        return (rows[y][x >>> 6] & (1L << x)) != 0;
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        if(living)
+            rows[y][x >>> 6] |= 1L << x;
+        else
+            rows[y][x >>> 6] &= ~(1L << x);
+    }
+
+    @Override
+    public void readRow(int y, long[] row)
+    {
+        System.arraycopy(rows[y], 0, row, 0, words);
+    }
+
+    @Override
+    public void writeRow(int y, long[] row)
+    {
+        System.arraycopy(row, 0, rows[y], 0, words);
+        if(words > 0)
+            rows[y][words - 1] &= -1L >>> (-width & 63);
+    }
+
+    @Override
+    public boolean hasRowStorage()
+    {
+        return true;
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+        if(rule.isConway())
+        {
+            table = CONWAY_TABLE;
+            tableNanos = CONWAY_TABLE_NANOS;
+        } else
+        {
+            long start = System.nanoTime();
+            table = buildTable(rule);
+            tableNanos = System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public String getStatistics()
+    {
+        return String.format("Lookup table for %s: %d entries, %d KB, built in %.1f ms", rule, table.length, table.length / 1024, tableNanos / 1e6);
+    }
+
+    @Override
+    public int getParallelism()
+    {
+        return stepper.getParallelism();
+    }
+
+    @Override
+    public void setParallelism(int parallelism)
+    {
+        stepper.setParallelism(parallelism);
+    }
+
+    @Override
+    public void step()
+    {
+        if(width == 0 || height == 0)
+            return;
+        stepper.run((height + 1) / 2, this);
+        long[][] swap = rows;
+        rows = next;
+        next = swap;
+    }
+
+    @Override
+    public void stepRows(int from, int to)
+    {
+        for(int block = from; block < to; block++)
+        {
+            int y = block * 2;
+            long[] r0 = rows[(y - 1 + height) % height];
+            long[] r1 = rows[y];
+            long[] r2 = rows[(y + 1) % height];
+            long[] r3 = rows[(y + 2) % height];
+            long[] out0 = next[y];
+            long[] out1 = y + 1 < height ? next[y + 1] : null;
+            Arrays.fill(out0, 0L);
+            if(out1 != null)
+                Arrays.fill(out1, 0L);
+            for(int x = 0; x < width; x += 2)
+            {
+                int window = window(r0, x) | window(r1, x) << 4 | window(r2, x) << 8 | window(r3, x) << 12;
+                long result = table[window];
+                if(x + 1 == width)
+                    result &= 0b0101;
+                out0[x >>> 6] |= (result & 3L) << (x & 63);
+                if(out1 != null)
+                    out1[x >>> 6] |= ((result >>> 2) & 3L) << (x & 63);
+            }
+        }
+    }
+
+    private int window(long[] row, int x)
+    {
+        int start = x - 1;
+        if(start < 0 || x + 2 >= width)
+            return bit(row, start) | bit(row, x) << 1 | bit(row, x + 1) << 2 | bit(row, x + 2) << 3;
+        int b = start & 63;
+        long bits = row[start >>> 6] >>> b;
+        if(b > 60)
+            bits |= row[(start >>> 6) + 1] << (64 - b);
+        return (int) bits & 0xF;
+    }
+
+    private int bit(long[] row, int x)
+    {
+        x = (x + width) % width;
+        return (int) (row[x >>> 6] >>> x) & 1;
+    }
+}
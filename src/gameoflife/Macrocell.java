@@ -0,0 +1,555 @@
+package gameoflife;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A pattern as a hash-consed quadtree, the structure of Golly's Macrocell (.mc) format. Node 0 is the empty node of
+ * any level; every other node refers only to nodes before it. Nodes of level 3 or less are leaves holding their cells
+ * as a bitmap of 8 bits per row, so a leaf of level 3 is a single long. The root is centred on the origin, as in
+ * HashLifeEngine.
+ */
+class Macrocell
+{
+    public static final int LEAF_LEVEL = 3;
+    private static final int MIN_ROOT_LEVEL = LEAF_LEVEL + 1;
+
+    private final int[] levels;
+    private final int[] children;
+    private final long[] leaves;
+    private final int size;
+    private final Rule rule;
+    private final long generation;
+
+    private Macrocell(int[] levels, int[] children, long[] leaves, int size, Rule rule, long generation)
+    {
+        this.levels = levels;
+        this.children = children;
+        this.leaves = leaves;
+        this.size = size;
+        this.rule = rule;
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the number of nodes, including the empty node 0.
+     */
+    public int getNodeCount()
+    {
+        return size;
+    }
+
+    public int getRoot()
+    {
+        return size - 1;
+    }
+
+    public int getLevel(int node)
+    {
+        return levels[node];
+    }
+
+    public boolean isLeaf(int node)
+    {
+        return levels[node] <= LEAF_LEVEL;
+    }
+
+    /**
+     * Returns a child of an inner node: 0 for north-west, 1 north-east, 2 south-west and 3 south-east.
+     */
+    public int getChild(int node, int quadrant)
+    {
+        return children[4 * node + quadrant];
+    }
+
+    /**
+     * Returns the cells of a leaf, bit (8 * y + x) holding the cell at column x of row y.
+     */
+    public long getLeaf(int node)
+    {
+        return leaves[node];
+    }
+
+    /**
+     * Returns the rule given in the file, or null if there was none.
+     */
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Returns {minX, minY, maxX, maxY} of the living cells, or null if there are none. Bounds are computed once per
+     * distinct node, so this is fast even for patterns far too large to expand.
+     */
+    public long[] getBounds()
+    {
+        if(size <= 1)
+            return null;
+        long[] bounds = new long[4 * size];
+        for(int node = 1; node < size; node++)
+        {
+            long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+            if(isLeaf(node))
+            {
+                for(long bits = leaves[node]; bits != 0; bits &= bits - 1)
+                {
+                    int i = Long.numberOfTrailingZeros(bits);
+                    minX = Math.min(minX, i & 7);
+                    maxX = Math.max(maxX, i & 7);
+                    minY = Math.min(minY, i >>> 3);
+                    maxY = Math.max(maxY, i >>> 3);
+                }
+            } else
+            {
+                long half = 1L << (levels[node] - 1);
+                for(int q = 0; q < 4; q++)
+                {
+                    int child = children[4 * node + q];
+                    if(child == 0)
+                        continue;
+                    long dx = (q & 1) * half;
+                    long dy = (q >>> 1) * half;
+                    minX = Math.min(minX, bounds[4 * child] + dx);
+                    minY = Math.min(minY, bounds[4 * child + 1] + dy);
+                    maxX = Math.max(maxX, bounds[4 * child + 2] + dx);
+                    maxY = Math.max(maxY, bounds[4 * child + 3] + dy);
+                }
+            }
+            bounds[4 * node] = minX;
+            bounds[4 * node + 1] = minY;
+            bounds[4 * node + 2] = maxX;
+            bounds[4 * node + 3] = maxY;
+        }
+        int root = getRoot();
+        long half = 1L << (levels[root] - 1);
+        return new long[]{bounds[4 * root] - half, bounds[4 * root + 1] - half, bounds[4 * root + 2] - half, bounds[4 * root + 3] - half};
+    }
+
+    /**
+     * Appends the living cells inside the given rectangle to a run list, one row at a time, skipping empty nodes.
+     */
+    public void addRuns(int minX, int minY, int maxX, int maxY, RunList runs)
+    {
+        if(size <= 1)
+            return;
+        int root = getRoot();
+        long half = 1L << (levels[root] - 1);
+        for(long y = Math.max(minY, -half); y <= Math.min(maxY, half - 1); y++)
+            visitRow(root, -half, -half, y, minX, maxX, runs);
+    }
+
+    private void visitRow(int node, long x, long y, long row, int minX, int maxX, RunList runs)
+    {
+        if(node == 0)
+            return;
+        long side = 1L << levels[node];
+        if(x > maxX || x + side <= minX)
+            return;
+        if(isLeaf(node))
+        {
+            int bits = (int) (leaves[node] >>> (8 * (row - y))) & 0xff;
+            for(int i = 0; bits != 0; i++, bits >>>= 1)
+                if((bits & 1) != 0 && x + i >= minX && x + i <= maxX)
+                    runs.add((int) (x + i), (int) row);
+            return;
+        }
+        long half = side >>> 1;
+        int south = row >= y + half ? 2 : 0;
+        long top = south != 0 ? y + half : y;
+        visitRow(children[4 * node + south], x, top, row, minX, maxX, runs);
+        visitRow(children[4 * node + south + 1], x + half, top, row, minX, maxX, runs);
+    }
+
+    /**
+     * Builds the quadtree of a run list, whose cells must lie within the int range.
+     */
+    public static Macrocell of(RunList runs, Rule rule, long generation)
+    {
+        Builder builder = new Builder();
+        LongIntMap blocks = new LongIntMap(Math.max(16, runs.count / 4));
+        long[] bits = new long[64];
+        int blockCount = 0;
+        long extent = 0;
+        for(int r = 0; r < runs.count; r++)
+        {
+            int y = runs.runs[3 * r];
+            int start = runs.runs[3 * r + 1];
+            int end = runs.runs[3 * r + 2];
+            extent = Math.max(extent, Math.max(Math.abs((long) y), Math.max(Math.abs((long) start), Math.abs((long) end))) + 1);
+            for(int bx = start >> 3; bx <= end >> 3; bx++)
+            {
+                long key = LongHashSet.pack(bx, y >> 3);
+                int slot = blocks.get(key);
+                if(slot == 0)
+                {
+                    if(blockCount == bits.length)
+                        bits = Arrays.copyOf(bits, blockCount * 2);
+                    slot = ++blockCount;
+                    blocks.addTo(key, slot);
+                }
+                int from = Math.max(start, bx << 3) & 7;
+                int to = Math.min(end, (bx << 3) + 7) & 7;
+                long row = (0xffL >>> (7 - to)) & (0xffL << from);
+                bits[slot - 1] |= row << (8 * (y & 7));
+            }
+        }
+        int rootLevel = MIN_ROOT_LEVEL;
+        while((1L << (rootLevel - 1)) < extent)
+            rootLevel++;
+        LongIntMap level = new LongIntMap(blocks.size());
+        long[] keys = blocks.rawKeys();
+        int[] values = blocks.rawValues();
+        for(int i = 0; i < keys.length; i++)
+            if(keys[i] != LongHashSet.EMPTY)
+                level.addTo(keys[i], builder.leaf(bits[values[i] - 1]));
+        for(int l = LEAF_LEVEL + 1; l < rootLevel; l++)
+        {
+            LongIntMap parents = new LongIntMap(Math.max(16, level.size() / 2));
+            int[] quadrants = new int[64];
+            int parentCount = 0;
+            keys = level.rawKeys();
+            values = level.rawValues();
+            for(int i = 0; i < keys.length; i++)
+            {
+                if(keys[i] == LongHashSet.EMPTY)
+                    continue;
+                int x = LongHashSet.unpackX(keys[i]);
+                int y = LongHashSet.unpackY(keys[i]);
+                long key = LongHashSet.pack(x >> 1, y >> 1);
+                int slot = parents.get(key);
+                if(slot == 0)
+                {
+                    if(4 * parentCount == quadrants.length)
+                        quadrants = Arrays.copyOf(quadrants, 8 * parentCount);
+                    slot = ++parentCount;
+                    parents.addTo(key, slot);
+                }
+                quadrants[4 * (slot - 1) + (x & 1) + 2 * (y & 1)] = values[i];
+            }
+            level = new LongIntMap(parents.size());
+            keys = parents.rawKeys();
+            values = parents.rawValues();
+            for(int i = 0; i < keys.length; i++)
+            {
+                if(keys[i] == LongHashSet.EMPTY)
+                    continue;
+                int q = 4 * (values[i] - 1);
+                level.addTo(keys[i], builder.node(l, quadrants[q], quadrants[q + 1], quadrants[q + 2], quadrants[q + 3]));
+            }
+        }
+        int root = builder.node(rootLevel, level.get(LongHashSet.pack(-1, -1)), level.get(LongHashSet.pack(0, -1)),
+                level.get(LongHashSet.pack(-1, 0)), level.get(LongHashSet.pack(0, 0)));
+        return builder.build(root, rootLevel, rule, generation);
+    }
+
+    /**
+     * Reads the text of a Macrocell file. Both 8x8 leaves and two-state level-1 nodes are accepted.
+     */
+    public static Macrocell read(BufferedReader in) throws IOException
+    {
+        String line = in.readLine();
+        if(line == null || !line.startsWith("[M2]"))
+            throw new IOException("Not a Macrocell file");
+        Builder builder = new Builder(false);
+        Rule rule = null;
+        long generation = 0;
+        int lineNumber = 1;
+        while((line = in.readLine()) != null)
+        {
+            lineNumber++;
+            if(line.isEmpty())
+                continue;
+            char first = line.charAt(0);
+            if(first == '#')
+            {
+                if(line.startsWith("#R"))
+                    rule = parseRule(line.substring(2));
+                else if(line.startsWith("#G"))
+                    generation = Long.parseLong(line.substring(2).trim());
+            } else if(first == '.' || first == '*' || first == '$')
+                builder.add(LEAF_LEVEL, 0, 0, 0, 0, parseLeaf(line, lineNumber));
+            else if(first >= '0' && first <= '9')
+            {
+                String[] fields = line.trim().split("\\s+");
+                if(fields.length < 5)
+                    throw new IOException("Malformed node on line " + lineNumber);
+                int level = Integer.parseInt(fields[0]);
+                int[] quadrants = new int[4];
+                for(int q = 0; q < 4; q++)
+                {
+                    quadrants[q] = Integer.parseInt(fields[q + 1]);
+                    if(level > 1 && (quadrants[q] < 0 || quadrants[q] >= builder.size || quadrants[q] != 0 && builder.levels[quadrants[q]] != level - 1))
+                        throw new IOException("Bad child reference on line " + lineNumber);
+                }
+                if(level == 1)
+                {
+                    for(int q = 0; q < 4; q++)
+                        quadrants[q] = quadrants[q] != 0 ? 1 : 0;
+                    builder.add(1, quadrants[0], quadrants[1], quadrants[2], quadrants[3], quadrants[0] | quadrants[1] << 1 | quadrants[2] << 8 | quadrants[3] << 9);
+                } else if(level <= LEAF_LEVEL)
+                    builder.add(level, quadrants[0], quadrants[1], quadrants[2], quadrants[3], combineLeaves(builder, level, quadrants));
+                else if(level < 63)
+                    builder.add(level, quadrants[0], quadrants[1], quadrants[2], quadrants[3], 0);
+                else
+                    throw new IOException("Node level " + level + " is too large on line " + lineNumber);
+            } else
+                throw new IOException("Unexpected line " + lineNumber + ": " + line);
+        }
+        if(builder.size <= 1)
+            builder.add(MIN_ROOT_LEVEL, 0, 0, 0, 0, 0);
+        return builder.grow(MIN_ROOT_LEVEL).build(rule, generation);
+    }
+
+    private static Rule parseRule(String text)
+    {
+        int colon = text.indexOf(':');
+        return Rule.parse(colon >= 0 ? text.substring(0, colon) : text);
+    }
+
+    private static long parseLeaf(String line, int lineNumber) throws IOException
+    {
+        long bits = 0;
+        int x = 0, y = 0;
+        for(int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if(c == '$')
+            {
+                x = 0;
+                y++;
+            } else if(c == '.' || c == '*')
+            {
+                if(x > 7 || y > 7)
+                    throw new IOException("Leaf larger than 8x8 on line " + lineNumber);
+                if(c == '*')
+                    bits |= 1L << (8 * y + x);
+                x++;
+            } else if(!Character.isWhitespace(c))
+                throw new IOException("Unexpected character '" + c + "' on line " + lineNumber);
+        }
+        return bits;
+    }
+
+    private static long combineLeaves(Builder builder, int level, int[] quadrants)
+    {
+        int half = 1 << (level - 1);
+        long bits = 0;
+        for(int q = 0; q < 4; q++)
+        {
+            long child = builder.leaves[quadrants[q]];
+            int dx = (q & 1) * half;
+            int dy = (q >>> 1) * half;
+            for(int y = 0; y < half; y++)
+                bits |= ((child >>> (8 * y)) & ((1L << half) - 1)) << (8 * (y + dy) + dx);
+        }
+        return bits;
+    }
+
+    /**
+     * Writes the tree in Macrocell format with 8x8 leaves.
+     */
+    public void write(Writer out) throws IOException
+    {
+        out.write("[M2] (gameoflife)\n");
+        if(rule != null)
+            out.write("#R " + rule + "\n");
+        if(generation != 0)
+            out.write("#G " + generation + "\n");
+        char[] row = new char[9];
+        StringBuilder leaf = new StringBuilder();
+        for(int node = 1; node < size; node++)
+        {
+            if(levels[node] != LEAF_LEVEL || (children[4 * node] | children[4 * node + 1] | children[4 * node + 2] | children[4 * node + 3]) != 0)
+            {
+                out.write(levels[node] + " " + children[4 * node] + " " + children[4 * node + 1] + " " + children[4 * node + 2] + " " + children[4 * node + 3] + "\n");
+                continue;
+            }
+            leaf.setLength(0);
+            int pending = 0;
+            for(int y = 0; y < 8; y++)
+            {
+                int bits = (int) (leaves[node] >>> (8 * y)) & 0xff;
+                if(bits == 0)
+                {
+                    pending++;
+                    continue;
+                }
+                for(; pending > 0; pending--)
+                    leaf.append('$');
+                int length = 32 - Integer.numberOfLeadingZeros(bits);
+                for(int x = 0; x < length; x++)
+                    row[x] = (bits >>> x & 1) != 0 ? '*' : '.';
+                leaf.append(row, 0, length).append('$');
+            }
+            out.write(leaf.append('\n').toString());
+        }
+    }
+
+    /**
+     * Creates nodes bottom-up, sharing identical ones so the tree stays hash-consed.
+     */
+    static class Builder
+    {
+        private int[] levels = new int[64];
+        private int[] children = new int[256];
+        private long[] leaves = new long[64];
+        private int size = 1;
+        private final Map<NodeKey, Integer> nodes;
+        private final LongIntMap leafIndex;
+
+        Builder()
+        {
+            this(true);
+        }
+
+        private Builder(boolean share)
+        {
+            nodes = share ? new HashMap<NodeKey, Integer>() : null;
+            leafIndex = share ? new LongIntMap(64) : null;
+        }
+
+        /**
+         * Returns the node for an 8x8 leaf, or 0 if it is empty.
+         */
+        int leaf(long bits)
+        {
+            if(bits == 0)
+                return 0;
+            long key = bits == LongHashSet.EMPTY ? 0 : bits;
+            int index = leafIndex.get(key);
+            if(index == 0)
+            {
+                index = add(LEAF_LEVEL, 0, 0, 0, 0, bits);
+                leafIndex.addTo(key, index);
+            }
+            return index;
+        }
+
+        int node(int level, int nw, int ne, int sw, int se)
+        {
+            if((nw | ne | sw | se) == 0)
+                return 0;
+            NodeKey key = new NodeKey(nw, ne, sw, se);
+            Integer index = nodes.get(key);
+            if(index == null)
+            {
+                index = add(level, nw, ne, sw, se, 0);
+                nodes.put(key, index);
+            }
+            return index;
+        }
+
+        private int add(int level, int nw, int ne, int sw, int se, long bits)
+        {
+            if(size == levels.length)
+            {
+                levels = Arrays.copyOf(levels, size * 2);
+                children = Arrays.copyOf(children, size * 8);
+                leaves = Arrays.copyOf(leaves, size * 2);
+            }
+            levels[size] = level;
+            children[4 * size] = nw;
+            children[4 * size + 1] = ne;
+            children[4 * size + 2] = sw;
+            children[4 * size + 3] = se;
+            leaves[size] = bits;
+            return size++;
+        }
+
+        /**
+         * Wraps the last node in empty borders, keeping it centred, until it reaches the given level.
+         */
+        private Builder grow(int level)
+        {
+            int root = size - 1;
+            if(levels[root] < LEAF_LEVEL)
+            {
+                int side = 1 << levels[root];
+                int shift = (8 - side) / 2;
+                long bits = 0;
+                for(int y = 0; y < side; y++)
+                    bits |= ((leaves[root] >>> (8 * y)) & ((1L << side) - 1)) << (8 * (y + shift) + shift);
+                root = add(LEAF_LEVEL, 0, 0, 0, 0, bits);
+            }
+            while(levels[root] < level)
+            {
+                int rootLevel = levels[root];
+                int[] quadrants = new int[4];
+                for(int q = 0; q < 4; q++)
+                {
+                    if(rootLevel == LEAF_LEVEL)
+                    {
+                        long bits = 0;
+                        int dx = (q & 1) * 4;
+                        int dy = (q >>> 1) * 4;
+                        for(int y = 0; y < 4; y++)
+                            bits |= ((leaves[root] >>> (8 * (y + dy) + dx)) & 0xfL) << (8 * (y + 4 - dy) + 4 - dx);
+                        quadrants[q] = bits == 0 ? 0 : add(LEAF_LEVEL, 0, 0, 0, 0, bits);
+                        continue;
+                    }
+                    int[] inner = new int[4];
+                    inner[3 - q] = children[4 * root + q];
+                    quadrants[q] = inner[3 - q] == 0 ? 0 : add(rootLevel, inner[0], inner[1], inner[2], inner[3], 0);
+                }
+                root = add(rootLevel + 1, quadrants[0], quadrants[1], quadrants[2], quadrants[3], 0);
+            }
+            return this;
+        }
+
+        /**
+         * Finishes the tree with the given root, which must be the last node created unless the pattern is empty.
+         */
+        Macrocell build(int root, int rootLevel, Rule rule, long generation)
+        {
+            if(root == 0)
+                add(rootLevel, 0, 0, 0, 0, 0);
+            return build(rule, generation);
+        }
+
+        private Macrocell build(Rule rule, long generation)
+        {
+            return new Macrocell(levels, children, leaves, size, rule, generation);
+        }
+    }
+
+    private static class NodeKey
+    {
+        final int nw;
+        final int ne;
+        final int sw;
+        final int se;
+
+        NodeKey(int nw, int ne, int sw, int se)
+        {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ((nw * 31 + ne) * 31 + sw) * 31 + se;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof NodeKey))
+                return false;
+            NodeKey k = (NodeKey) o;
+            return nw == k.nw && ne == k.ne && sw == k.sw && se == k.se;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package gameoflife;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+class MappedEngine implements StepEngine, RowKernel
+{
+    public static final Path DEFAULT_FILE = Paths.get("universe.map");
+
+    private static final long MAGIC = 0x474f4c4d41503031L;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4096;
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private final ArrayList<MappedByteBuffer> mappings = new ArrayList<>();
+    private int width;
+    private int height;
+    private int words;
+    private OffHeapGrid[] grids;
+    private int current;
+    private long generation;
+    private Rule rule = Rule.CONWAY;
+    private final StripeStepper stepper = new StripeStepper();
+    private ProcessCounters lastStep;
+    private long lastStepNanos;
+
+    public MappedEngine()
+    {
+        this(DEFAULT_FILE);
+    }
+
+    public MappedEngine(Path file)
+    {
+        this.file = file;
+        width = 0;
+        height = 0;
+        words = 0;
+    }
+
+    public static MappedEngine open(Path file)
+    {
+        MappedEngine engine = new MappedEngine(file);
+        try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+            in.read(buffer, 0);
+            buffer.flip();
+            if(buffer.remaining() < 40 || buffer.getLong() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException("Not a mapped universe: " + file);
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            engine.map(width, height, false);
+        } catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        engine.current = engine.header.getInt(20);
+        engine.generation = engine.header.getLong(24);
+        engine.rule = Rule.parse(readRule(engine.header));
+        return engine;
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    @Override
+    public void setGeneration(long generation)
+    {
+        this.generation = generation;
+        if(header != null)
+            writeStepHeader();
+    }
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.MAPPED;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        try
+        {
+            map(width, height, true);
+        } catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        current = 0;
+        generation = 0;
+        writeHeader();
+    }
+
+    private void map(int width, int height, boolean truncate) throws IOException
+    {
+        unmap();
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if(truncate)
+            channel.truncate(0);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        long gridBytes = ((long) words * height * Long.BYTES + HEADER_BYTES - 1) / HEADER_BYTES * HEADER_BYTES;
+        grids = new OffHeapGrid[2];
+        for(int g = 0; g < grids.length; g++)
+        {
+            long offset = HEADER_BYTES + g * gridBytes;
+            LongBuffer[] segments = new LongBuffer[OffHeapGrid.segmentCount(words, height)];
+            for(int s = 0; s < segments.length; s++)
+            {
+                long bytes = (long) OffHeapGrid.segmentRows(words, height, s) * words * Long.BYTES;
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes);
+                mappings.add(mapping);
+                segments[s] = mapping.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                offset += bytes;
+            }
+            grids[g] = new OffHeapGrid(segments, words);
+        }
+    }
+
+    /**
+     * Writes the whole header. Steps only change the current grid and generation, which writeStepHeader updates.
+     */
+    private void writeHeader()
+    {
+        header.putLong(0, MAGIC);
+        header.putInt(8, VERSION);
+        header.putInt(12, width);
+        header.putInt(16, height);
+        header.putInt(20, current);
+        header.putLong(24, generation);
+        byte[] text = rule.toString().getBytes();
+        header.putInt(32, text.length);
+        header.put(36, text);
+    }
+
+    private void writeStepHeader()
+    {
+        header.putInt(20, current);
+        header.putLong(24, generation);
+    }
+
+    private static String readRule(MappedByteBuffer header)
+    {
+        byte[] text = new byte[header.getInt(32)];
+        header.get(36, text);
+        return new String(text);
+    }
+
+    public void sync()
+    {
+        for(MappedByteBuffer mapping : mappings)
+            mapping.force();
+        if(header != null)
+            header.force();
+    }
+
+    /**
+     * Flushes and unmaps every region now, so that a resize never maps the file while old regions are still mapped.
+     */
+    private void unmap()
+    {
+        if(channel == null)
+            return;
+        sync();
+        if(header != null)
+            mappings.add(header);
+        grids = null;
+        header = null;
+        FileChannel closing = channel;
+        channel = null;
+        try
+        {
+            for(MappedByteBuffer mapping : mappings)
+                OffHeapArena.release(mapping);
+        } catch(ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Could not unmap " + file + ": " + e.getMessage(), e);
+        } finally
+        {
+            mappings.clear();
+            try
+            {
+                closing.close();
+            } catch(IOException e)
+            {
+                throw new UncheckedIOException("Could not close " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        unmap();
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public void clear()
+    {
+        long[] empty = new long[words];
+        for(int y = 0; y < height; y++)
+            grids[current].writeRow(y, empty);
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        return (grids[current].getWord(y, x >>> 6) & (1L << x)) != 0;
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        long word = grids[current].getWord(y, x >>> 6);
+        grids[current].setWord(y, x >>> 6, living ? word | (1L << x) : word & ~(1L << x));
+    }
+
+    @Override
+    public void readRow(int y, long[] row)
+    {
+        grids[current].readRow(y, row);
+    }
+
+    @Override
+    public void writeRow(int y, long[] row)
+    {
+        grids[current].writeRow(y, row);
+        grids[current].setWord(y, words - 1, row[words - 1] & (-1L >>> (-width & 63)));
+    }
+
+    @Override
+    public boolean hasRowStorage()
+    {
+        return true;
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+        if(header != null)
+            writeHeader();
+    }
+
+    @Override
+    public int getParallelism()
+    {
+        return stepper.getParallelism();
+    }
+
+    @Override
+    public void setParallelism(int parallelism)
+    {
+        stepper.setParallelism(parallelism);
+    }
+
+    @Override
+    public void step()
+    {
+        if(width == 0 || height == 0)
+            return;
+        ProcessCounters start = ProcessCounters.sample();
+        long startNanos = System.nanoTime();
+        stepper.run(height, this);
+        current ^= 1;
+        generation++;
+        writeStepHeader();
+        lastStepNanos = System.nanoTime() - startNanos;
+        lastStep = ProcessCounters.sample().since(start);
+    }
+
+    public ProcessCounters getLastStepCounters()
+    {
+        return lastStep;
+    }
+
+    @Override
+    public String getStatistics()
+    {
+        if(lastStep == null)
+            return null;
+        return String.format("Step: %.1f ms; %s", lastStepNanos / 1e6, lastStep);
+    }
+
+    @Override
+    public void stepRows(int from, int to)
+    {
+        OffHeapGrid cells = grids[current];
+        OffHeapGrid next = grids[current ^ 1];
+        long[] up = new long[words];
+        long[] mid = new long[words];
+        long[] down = new long[words];
+        long[] out = new long[words];
+        cells.readRow(from == 0 ? height - 1 : from - 1, up);
+        cells.readRow(from, mid);
+        for(int y = from; y < to; y++)
+        {
+            cells.readRow(y == height - 1 ? 0 : y + 1, down);
+            BitKernel.stepRow(up, mid, down, out, width, rule);
+            next.writeRow(y, out);
+            long[] swap = up;
+            up = mid;
+            mid = down;
+            down = swap;
+        }
+    }
+
+    @Override
+    public void forEachLiving(int minX, int minY, int maxX, int maxY, CellVisitor visitor)
+    {
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        maxX = Math.min(maxX, width - 1);
+        maxY = Math.min(maxY, height - 1);
+        if(minX > maxX)
+            return;
+        OffHeapGrid cells = grids[current];
+        for(int y = minY; y <= maxY; y++)
+        {
+            for(int i = minX >>> 6; i <= maxX >>> 6; i++)
+            {
+                long word = cells.getWord(y, i);
+                while(word != 0)
+                {
+                    int x = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if(x >= minX && x <= maxX)
+                        visitor.visit(x, y);
+                }
+            }
+        }
+    }
+}
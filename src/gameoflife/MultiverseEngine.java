@@ -0,0 +1,304 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Steps 64 independent universes of the same size at once. Each cell is a long whose bit i belongs to universe (lane)
+ * i, so the bitboard adder in BitKernel advances every lane with the same instructions. Lanes are loaded from and
+ * extracted to ordinary engines, and a lane counts as stabilized once its state repeats with a period of at most
+ * MAX_PERIOD.
+ */
+class MultiverseEngine implements RowKernel
+{
+    public static final int LANES = 64;
+    public static final int MAX_PERIOD = 4;
+
+    private int width;
+    private int height;
+    private int stride;
+    private long[][] history = new long[MAX_PERIOD + 1][];
+    private int current;
+    private final long[] changed = new long[MAX_PERIOD];
+    private final int[] age = new int[LANES];
+    private final int[] period = new int[LANES];
+    private long stableLanes;
+    private long generation;
+    private Rule rule = Rule.CONWAY;
+    private Boundary boundary = Boundary.TORUS;
+    private final StripeStepper stepper = new StripeStepper();
+
+    public MultiverseEngine(int width, int height)
+    {
+        resize(width, height);
+    }
+
+    public void resize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        stride = width + 2;
+        for(int i = 0; i < history.length; i++)
+            history[i] = new long[stride * (height + 2)];
+        current = 0;
+        resetLanes(-1L);
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException("Multiverse engine does not support " + rule);
+        this.rule = rule;
+        resetLanes(-1L);
+    }
+
+    public boolean supports(Rule rule)
+    {
+        return !rule.isGenerations() && !rule.bornFromNothing();
+    }
+
+    public Boundary getBoundary()
+    {
+        return boundary;
+    }
+
+    public void setBoundary(Boundary boundary)
+    {
+        this.boundary = boundary;
+        resetLanes(-1L);
+    }
+
+    public int getParallelism()
+    {
+        return stepper.getParallelism();
+    }
+
+    public void setParallelism(int parallelism)
+    {
+        stepper.setParallelism(parallelism);
+    }
+
+    public void clear()
+    {
+        Arrays.fill(history[current], 0L);
+        resetLanes(-1L);
+    }
+
+    public void clearLane(int lane)
+    {
+        long keep = ~(1L << lane);
+        long[] cells = history[current];
+        for(int i = 0; i < cells.length; i++)
+            cells[i] &= keep;
+        resetLanes(1L << lane);
+    }
+
+    public boolean isLiving(int lane, int x, int y)
+    {
+        return (history[current][(y + 1) * stride + x + 1] & (1L << lane)) != 0;
+    }
+
+    public void setLiving(int lane, int x, int y, boolean living)
+    {
+        int i = (y + 1) * stride + x + 1;
+        if(living)
+            history[current][i] |= 1L << lane;
+        else
+            history[current][i] &= ~(1L << lane);
+        resetLanes(1L << lane);
+    }
+
+    /**
+     * Replaces a lane with the living cells of the source engine that fall inside this universe.
+     */
+    public void load(int lane, StepEngine source)
+    {
+        clearLane(lane);
+        long[] cells = history[current];
+        long bit = 1L << lane;
+        source.forEachLiving(0, 0, width - 1, height - 1, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                cells[(y + 1) * stride + x + 1] |= bit;
+            }
+        });
+    }
+
+    /**
+     * Copies a lane into the target engine, which is resized to this universe.
+     */
+    public void extract(int lane, StepEngine target)
+    {
+        target.resize(width, height);
+        long[] cells = history[current];
+        for(int y = 0; y < height; y++)
+        {
+            int row = (y + 1) * stride + 1;
+            for(int x = 0; x < width; x++)
+                if((cells[row + x] >>> lane & 1L) != 0)
+                    target.setLiving(x, y, true);
+        }
+    }
+
+    public int getPopulation(int lane)
+    {
+        long[] cells = history[current];
+        int population = 0;
+        for(int y = 0; y < height; y++)
+        {
+            int row = (y + 1) * stride + 1;
+            for(int x = 0; x < width; x++)
+                population += (int) (cells[row + x] >>> lane) & 1;
+        }
+        return population;
+    }
+
+    /**
+     * Returns a mask with bit i set once lane i has repeated a state, including lanes that died out.
+     */
+    public long getStableLanes()
+    {
+        return stableLanes;
+    }
+
+    /**
+     * Returns the period lane settled into, or 0 while it is still evolving.
+     */
+    public int getPeriod(int lane)
+    {
+        return period[lane];
+    }
+
+    /**
+     * Returns the number of generations since the lane was loaded or edited.
+     */
+    public int getAge(int lane)
+    {
+        return age[lane];
+    }
+
+    private void resetLanes(long lanes)
+    {
+        stableLanes &= ~lanes;
+        for(int lane = 0; lane < LANES; lane++)
+        {
+            if((lanes >>> lane & 1L) != 0)
+            {
+                age[lane] = 0;
+                period[lane] = 0;
+            }
+        }
+    }
+
+    public void step()
+    {
+        if(width < 1 || height < 1)
+            return;
+        fillHalo(history[current]);
+        Arrays.fill(changed, 0L);
+        stepper.run(height, this);
+        current = (current + 1) % history.length;
+        generation++;
+        for(int lane = 0; lane < LANES; lane++)
+        {
+            age[lane]++;
+            if((stableLanes >>> lane & 1L) != 0)
+                continue;
+            for(int p = 1; p <= Math.min(age[lane], MAX_PERIOD); p++)
+            {
+                if((changed[p - 1] >>> lane & 1L) == 0)
+                {
+                    period[lane] = p;
+                    stableLanes |= 1L << lane;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void fillHalo(long[] cells)
+    {
+        int top = 0;
+        int bottom = (height + 1) * stride;
+        switch(boundary)
+        {
+            case TORUS:
+                System.arraycopy(cells, height * stride, cells, top, stride);
+                System.arraycopy(cells, stride, cells, bottom, stride);
+                break;
+            case KLEIN:
+                for(int x = 1; x <= width; x++)
+                {
+                    cells[top + x] = cells[height * stride + width + 1 - x];
+                    cells[bottom + x] = cells[stride + width + 1 - x];
+                }
+                break;
+            default:
+                Arrays.fill(cells, top, top + stride, 0L);
+                Arrays.fill(cells, bottom, bottom + stride, 0L);
+        }
+        boolean wrap = boundary != Boundary.DEAD;
+        for(int row = 0; row <= bottom; row += stride)
+        {
+            cells[row] = wrap ? cells[row + width] : 0L;
+            cells[row + width + 1] = wrap ? cells[row + 1] : 0L;
+        }
+    }
+
+    @Override
+    public void stepRows(int from, int to)
+    {
+        long[] cells = history[current];
+        long[] next = history[(current + 1) % history.length];
+        boolean conway = rule.isConway();
+        int birth = rule.getBirth();
+        int survival = rule.getSurvival();
+        long[] diff = new long[MAX_PERIOD];
+        for(int y = from; y < to; y++)
+        {
+            int start = (y + 1) * stride + 1;
+            int end = start + width;
+            for(int i = start; i < end; i++)
+            {
+                int up = i - stride;
+                int down = i + stride;
+                next[i] = conway ? BitKernel.next(cells[up - 1], cells[up], cells[up + 1], cells[i - 1], cells[i], cells[i + 1], cells[down - 1], cells[down], cells[down + 1])
+                        : BitKernel.next(cells[up - 1], cells[up], cells[up + 1], cells[i - 1], cells[i], cells[i + 1], cells[down - 1], cells[down], cells[down + 1], birth, survival);
+            }
+            for(int p = 1; p <= MAX_PERIOD; p++)
+            {
+                long[] past = history[(current + 1 - p + history.length) % history.length];
+                long d = 0;
+                for(int i = start; i < end; i++)
+                    d |= next[i] ^ past[i];
+                diff[p - 1] |= d;
+            }
+        }
+        synchronized(changed)
+        {
+            for(int p = 0; p < MAX_PERIOD; p++)
+                changed[p] |= diff[p];
+        }
+    }
+}
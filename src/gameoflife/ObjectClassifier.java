@@ -0,0 +1,723 @@
+package gameoflife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a region of a universe into 8-connected objects and names them. Living cells are sorted into horizontal runs,
+ * the runs of each stripe of rows are joined with union-find in parallel, and the stripe seams are joined afterwards.
+ * Given the period of a stable universe, objects that interact during the period are merged, so that oscillators whose
+ * phases fall apart, like the toad and the beacon, are found whole. Every object is hashed under each of its eight
+ * rotations and reflections, and the smallest hash is looked up in a bounded cache of shapes, so a shape seen before in
+ * any orientation is named without being canonicalised again once its cells are checked against the cached ones.
+ * Objects are found in the plane: on a torus, an object straddling the edge is reported in two parts.
+ */
+class ObjectClassifier
+{
+    private static final int STRIPE_ROWS = 32;
+    private static final int MAX_NAMED_SIDE = 64;
+    private static final int MAX_NAMED_PERIOD = 4;
+    private static final int MAX_MERGE_WORK = 1 << 22;
+    private static final int MAX_CACHED_SHAPES = 1 << 16;
+    private static final int ORIENTATIONS = 8;
+
+    private final Map<String, String> names = new HashMap<>();
+    private final LongIntMap cache = new LongIntMap(1024);
+    private final List<Shape> shapes = new ArrayList<>();
+    private final StripeStepper stepper = new StripeStepper();
+    private int cacheHits;
+    private int cacheMisses;
+
+    public ObjectClassifier(PatternLibrary patterns)
+    {
+        for(String name : patterns.getNames())
+        {
+            PatternLibrary.Pattern pattern;
+            try
+            {
+                pattern = patterns.get(name);
+            } catch(IllegalArgumentException e)
+            {
+                continue;
+            }
+            if(pattern.getHeight() == 0 || pattern.getHeight() > MAX_NAMED_SIDE || pattern.getWidth() > MAX_NAMED_SIDE)
+                continue;
+            int side = Math.max(pattern.getWidth(), pattern.getHeight()) + 16;
+            BitboardEngine grid = newGrid(side, side);
+            pattern.place(grid);
+            int period = period(grid);
+            for(int phase = 0; phase < MAX_NAMED_PERIOD; phase++)
+            {
+                List<DetectedObject> objects = classify(grid, period);
+                if(objects.size() == 1 && !names.containsKey(objects.get(0).getShape()))
+                    names.put(objects.get(0).getShape(), name);
+                grid.step();
+            }
+        }
+        cache.clear();
+        shapes.clear();
+        cacheHits = 0;
+        cacheMisses = 0;
+    }
+
+    public int getParallelism()
+    {
+        return stepper.getParallelism();
+    }
+
+    public void setParallelism(int parallelism)
+    {
+        stepper.setParallelism(parallelism);
+    }
+
+    public int getCacheHits()
+    {
+        return cacheHits;
+    }
+
+    public int getCacheMisses()
+    {
+        return cacheMisses;
+    }
+
+    public List<DetectedObject> classify(StepEngine grid)
+    {
+        return classify(grid, 1);
+    }
+
+    /**
+     * Classifies a universe that repeats with the given period, merging objects that interact within the period.
+     */
+    public List<DetectedObject> classify(StepEngine grid, int period)
+    {
+        return classify(grid, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, period);
+    }
+
+    public List<DetectedObject> classify(StepEngine grid, int minX, int minY, int maxX, int maxY, int period)
+    {
+        return label(runsOf(grid, minX, minY, maxX, maxY), period, grid.getRule());
+    }
+
+    private static BitboardEngine newGrid(int width, int height)
+    {
+        BitboardEngine grid = new BitboardEngine();
+        grid.resize(width, height);
+        grid.setParallelism(1);
+        grid.setBoundary(Boundary.DEAD);
+        return grid;
+    }
+
+    /**
+     * Returns the period of a pattern that returns to its own cells within MAX_NAMED_PERIOD generations, or 1.
+     */
+    private static int period(BitboardEngine grid)
+    {
+        long[] start = new long[grid.getWordsPerRow() * grid.getHeight()];
+        long[] phase = new long[start.length];
+        grid.readBitmap(start);
+        BitboardEngine copy = newGrid(grid.getWidth(), grid.getHeight());
+        copy.writeBitmap(start);
+        for(int period = 1; period <= MAX_NAMED_PERIOD; period++)
+        {
+            copy.step();
+            copy.readBitmap(phase);
+            if(Arrays.equals(start, phase))
+                return period;
+        }
+        return 1;
+    }
+
+    /**
+     * Collects the living cells of a region as runs.
+     */
+    private static Runs runsOf(StepEngine grid, int minX, int minY, int maxX, int maxY)
+    {
+        long[][] cells = new long[1][64];
+        int[] count = new int[1];
+        grid.forEachLiving(minX, minY, maxX, maxY, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                if(count[0] == cells[0].length)
+                    cells[0] = Arrays.copyOf(cells[0], count[0] * 2);
+                cells[0][count[0]++] = ((long) y << 32) | ((x ^ Integer.MIN_VALUE) & 0xffffffffL);
+            }
+        });
+        long[] sorted = cells[0];
+        Arrays.parallelSort(sorted, 0, count[0]);
+        return new Runs(sorted, count[0]);
+    }
+
+    private List<DetectedObject> label(Runs runs, int period, Rule rule)
+    {
+        if(shapes.size() >= MAX_CACHED_SHAPES)
+        {
+            cache.clear();
+            shapes.clear();
+        }
+        int[] object = new int[runs.size];
+        int objects = components(runs, object);
+        if(objects > 1)
+            objects = mergeInteracting(runs, object, objects, period, rule);
+        return describe(runs, object, objects);
+    }
+
+    /**
+     * Labels the 8-connected components of the runs, storing the component of every run. Returns the number of
+     * components.
+     */
+    private int components(Runs runs, int[] object)
+    {
+        int[] parent = new int[runs.size];
+        for(int i = 0; i < parent.length; i++)
+            parent[i] = i;
+        int stripes = (runs.rows + STRIPE_ROWS - 1) / STRIPE_ROWS;
+        stepper.run(stripes, new RowKernel()
+        {
+            @Override
+            public void stepRows(int from, int to)
+            {
+                for(int stripe = from; stripe < to; stripe++)
+                {
+                    int last = Math.min(runs.rows, (stripe + 1) * STRIPE_ROWS);
+                    for(int row = stripe * STRIPE_ROWS + 1; row < last; row++)
+                        joinRows(runs, parent, row);
+                }
+            }
+        });
+        for(int row = STRIPE_ROWS; row < runs.rows; row += STRIPE_ROWS)
+            joinRows(runs, parent, row);
+
+        int objects = 0;
+        for(int i = 0; i < runs.size; i++)
+        {
+            int root = find(parent, i);
+            object[i] = root == i ? objects++ : object[root];
+        }
+        return objects;
+    }
+
+    /**
+     * Merges objects that interact during the period. The cells are stepped through the period by hand with every
+     * cell owned by an object; wherever the cells of two objects together give a cell another fate than the objects
+     * would give it apart, such as a birth the one allows and the other's neighbours prevent, the two are merged. This
+     * keeps an oscillator whose phases fall apart, like the toad or the beacon, and a pseudo still life propped up by
+     * its neighbour, as one object, while objects that merely pass near each other stay apart. Only objects whose
+     * bounding boxes come within two cells per generation of the period of another object's are stepped, and at period
+     * 1 only the cells where two such boxes meet are examined. Returns the number of objects left.
+     */
+    private int mergeInteracting(Runs runs, int[] object, int objects, int period, Rule rule)
+    {
+        int[] minX = new int[objects];
+        int[] minY = new int[objects];
+        int[] maxX = new int[objects];
+        int[] maxY = new int[objects];
+        bounds(runs, object, minX, minY, maxX, maxY);
+        long[] pairs = candidatePairs(minX, minY, maxX, maxY, 2 * period);
+        if(pairs.length == 0)
+            return objects;
+        boolean[] near = new boolean[objects];
+        for(long pair : pairs)
+            near[(int) (pair >>> 32)] = near[(int) pair] = true;
+        int population = 0;
+        for(int i = 0; i < runs.size; i++)
+            if(near[object[i]])
+                population += runs.end[i] - runs.start[i] + 1;
+        if((long) population * period > MAX_MERGE_WORK)
+            return objects;
+        long[] cells = new long[population];
+        int[] owner = new int[population];
+        int living = 0;
+        for(int i = 0; i < runs.size; i++)
+        {
+            if(!near[object[i]])
+                continue;
+            for(int x = runs.start[i]; x <= runs.end[i]; x++)
+            {
+                cells[living] = LongHashSet.pack(x, runs.y[i]);
+                owner[living++] = object[i];
+            }
+        }
+        int[] parent = new int[objects];
+        for(int o = 0; o < objects; o++)
+            parent[o] = o;
+        Neighbourhood neighbourhood = new Neighbourhood(parent, rule);
+        if(period == 1)
+        {
+            neighbourhood.index(cells, owner, living);
+            LongHashSet visited = new LongHashSet();
+            for(long pair : pairs)
+            {
+                int a = (int) (pair >>> 32);
+                int b = (int) pair;
+                for(int y = Math.max(minY[a], minY[b]) - 1; y <= Math.min(maxY[a], maxY[b]) + 1; y++)
+                    for(int x = Math.max(minX[a], minX[b]) - 1; x <= Math.min(maxX[a], maxX[b]) + 1; x++)
+                        if(visited.add(LongHashSet.pack(x, y)))
+                            neighbourhood.step(x, y);
+            }
+        }
+        for(int t = 0; t < period && period > 1 && living > 0; t++)
+        {
+            neighbourhood.index(cells, owner, living);
+            LongHashSet visited = new LongHashSet(living * 4);
+            long[] nextCells = new long[living * 2];
+            int[] nextOwner = new int[living * 2];
+            int next = 0;
+            for(int i = 0; i < living; i++)
+            {
+                int cx = LongHashSet.unpackX(cells[i]);
+                int cy = LongHashSet.unpackY(cells[i]);
+                for(int y = cy - 1; y <= cy + 1; y++)
+                {
+                    for(int x = cx - 1; x <= cx + 1; x++)
+                    {
+                        long cell = LongHashSet.pack(x, y);
+                        if(!visited.add(cell))
+                            continue;
+                        int node = neighbourhood.step(x, y);
+                        if(node < 0)
+                            continue;
+                        if(next == nextCells.length)
+                        {
+                            nextCells = Arrays.copyOf(nextCells, next * 2);
+                            nextOwner = Arrays.copyOf(nextOwner, next * 2);
+                        }
+                        nextCells[next] = cell;
+                        nextOwner[next++] = node;
+                    }
+                }
+            }
+            cells = nextCells;
+            owner = nextOwner;
+            living = next;
+        }
+        int[] merged = new int[objects];
+        int count = 0;
+        for(int o = 0; o < objects; o++)
+        {
+            int root = find(parent, o);
+            merged[o] = root == o ? count++ : merged[root];
+        }
+        for(int i = 0; i < runs.size; i++)
+            object[i] = merged[object[i]];
+        return count;
+    }
+
+    /**
+     * Returns every pair of objects, packed as a << 32 | b, whose bounding boxes come within margin cells of each
+     * other. Objects further apart cannot touch each other's neighbourhoods within a period of margin / 2
+     * generations. The boxes are swept in order of their left edges.
+     */
+    private static long[] candidatePairs(int[] minX, int[] minY, int[] maxX, int[] maxY, int margin)
+    {
+        int objects = minX.length;
+        long[] order = new long[objects];
+        for(int o = 0; o < objects; o++)
+            order[o] = ((long) minX[o] << 32) | o;
+        Arrays.sort(order);
+        long[] pairs = new long[64];
+        int count = 0;
+        for(int i = 0; i < objects; i++)
+        {
+            int a = (int) order[i];
+            for(int j = i + 1; j < objects; j++)
+            {
+                int b = (int) order[j];
+                if(minX[b] > maxX[a] + margin)
+                    break;
+                if(minY[b] > maxY[a] + margin || maxY[b] < minY[a] - margin)
+                    continue;
+                if(count == pairs.length)
+                    pairs = Arrays.copyOf(pairs, count * 2);
+                pairs[count++] = ((long) a << 32) | b;
+            }
+        }
+        return Arrays.copyOf(pairs, count);
+    }
+
+    private static void bounds(Runs runs, int[] object, int[] minX, int[] minY, int[] maxX, int[] maxY)
+    {
+        Arrays.fill(minX, Integer.MAX_VALUE);
+        Arrays.fill(minY, Integer.MAX_VALUE);
+        Arrays.fill(maxX, Integer.MIN_VALUE);
+        Arrays.fill(maxY, Integer.MIN_VALUE);
+        for(int i = 0; i < runs.size; i++)
+        {
+            int o = object[i];
+            minX[o] = Math.min(minX[o], runs.start[i]);
+            maxX[o] = Math.max(maxX[o], runs.end[i]);
+            minY[o] = Math.min(minY[o], runs.y[i]);
+            maxY[o] = Math.max(maxY[o], runs.y[i]);
+        }
+    }
+
+    private List<DetectedObject> describe(Runs runs, int[] object, int objects)
+    {
+        int[] minX = new int[objects];
+        int[] minY = new int[objects];
+        int[] maxX = new int[objects];
+        int[] maxY = new int[objects];
+        int[] population = new int[objects];
+        bounds(runs, object, minX, minY, maxX, maxY);
+        for(int i = 0; i < runs.size; i++)
+            population[object[i]] += runs.end[i] - runs.start[i] + 1;
+        long[] hashes = new long[objects * ORIENTATIONS];
+        long[][] members = new long[objects][];
+        int[] filled = new int[objects];
+        for(int o = 0; o < objects; o++)
+            members[o] = new long[population[o]];
+        for(int i = 0; i < runs.size; i++)
+        {
+            int o = object[i];
+            int width = maxX[o] - minX[o] + 1;
+            int height = maxY[o] - minY[o] + 1;
+            int y = runs.y[i] - minY[o];
+            for(int x = runs.start[i] - minX[o]; x <= runs.end[i] - minX[o]; x++)
+            {
+                members[o][filled[o]++] = LongHashSet.pack(x, y);
+                for(int t = 0; t < ORIENTATIONS; t++)
+                {
+                    long cell = orient(t, x, y, width, height);
+                    hashes[o * ORIENTATIONS + t] += Zobrist.key(LongHashSet.unpackX(cell), LongHashSet.unpackY(cell));
+                }
+            }
+        }
+        List<DetectedObject> result = new ArrayList<>(objects);
+        for(int o = 0; o < objects; o++)
+        {
+            int best = 0;
+            for(int t = 1; t < ORIENTATIONS; t++)
+                if(hashes[o * ORIENTATIONS + t] < hashes[o * ORIENTATIONS + best])
+                    best = t;
+            long[] cells = oriented(members[o], best, maxX[o] - minX[o] + 1, maxY[o] - minY[o] + 1);
+            long key = key(hashes[o * ORIENTATIONS + best]);
+            int index = cache.get(key);
+            Shape shape = index == 0 ? null : shapes.get(index - 1);
+            if(shape != null && Arrays.equals(shape.cells, cells))
+                cacheHits++;
+            else
+            {
+                cacheMisses++;
+                String canonical = canonical(members[o]);
+                Shape fresh = new Shape(canonical, names.get(canonical), cells);
+                if(shape == null)
+                {
+                    shapes.add(fresh);
+                    cache.addTo(key, shapes.size());
+                }
+                shape = fresh;
+            }
+            result.add(new DetectedObject(shape, minX[o], minY[o], maxX[o] - minX[o] + 1, maxY[o] - minY[o] + 1, population[o]));
+        }
+        return result;
+    }
+
+    private static long key(long hash)
+    {
+        return hash == LongHashSet.EMPTY ? 0L : hash;
+    }
+
+    /**
+     * Returns cell (x, y) of a width x height box under rotation or reflection t, packed as by LongHashSet.pack.
+     */
+    private static long orient(int t, int x, int y, int width, int height)
+    {
+        if((t & 1) != 0)
+            x = width - 1 - x;
+        if((t & 2) != 0)
+            y = height - 1 - y;
+        return (t & 4) != 0 ? LongHashSet.pack(y, x) : LongHashSet.pack(x, y);
+    }
+
+    /**
+     * Returns the cells of an object, relative to its bounding box, under rotation or reflection t in sorted order.
+     */
+    private static long[] oriented(long[] cells, int t, int width, int height)
+    {
+        long[] result = new long[cells.length];
+        for(int i = 0; i < cells.length; i++)
+            result[i] = orient(t, LongHashSet.unpackX(cells[i]), LongHashSet.unpackY(cells[i]), width, height);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Unions every run in the given row with the runs of the row above it that touch it, diagonals included.
+     */
+    private static void joinRows(Runs runs, int[] parent, int row)
+    {
+        int i = runs.rowStart[row - 1];
+        int iEnd = runs.rowStart[row];
+        int j = iEnd;
+        int jEnd = runs.rowStart[row + 1];
+        if(i == iEnd || runs.y[i] + 1 != runs.y[j])
+            return;
+        while(i < iEnd && j < jEnd)
+        {
+            if(runs.start[j] <= runs.end[i] + 1 && runs.end[j] >= runs.start[i] - 1)
+                union(parent, i, j);
+            if(runs.end[i] < runs.end[j])
+                i++;
+            else
+                j++;
+        }
+    }
+
+    private static int find(int[] parent, int i)
+    {
+        while(parent[i] != i)
+        {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b)
+    {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if(rootA < rootB)
+            parent[rootB] = rootA;
+        else if(rootB < rootA)
+            parent[rootA] = rootB;
+    }
+
+    /**
+     * Returns a key that is identical for every rotation and reflection of the object: the smallest of its eight
+     * transformed bitmaps.
+     */
+    public static String canonical(long[] object)
+    {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for(long cell : object)
+        {
+            minX = Math.min(minX, LongHashSet.unpackX(cell));
+            minY = Math.min(minY, LongHashSet.unpackY(cell));
+            maxX = Math.max(maxX, LongHashSet.unpackX(cell));
+            maxY = Math.max(maxY, LongHashSet.unpackY(cell));
+        }
+        int width = maxX - minX + 1;
+        int height = maxY - minY + 1;
+        String best = null;
+        for(int t = 0; t < 8; t++)
+        {
+            boolean swap = (t & 4) != 0;
+            int w = swap ? height : width;
+            int h = swap ? width : height;
+            BitSet bits = new BitSet(w * h);
+            for(long cell : object)
+            {
+                int x = LongHashSet.unpackX(cell) - minX;
+                int y = LongHashSet.unpackY(cell) - minY;
+                if((t & 1) != 0)
+                    x = width - 1 - x;
+                if((t & 2) != 0)
+                    y = height - 1 - y;
+                bits.set(swap ? x * w + y : y * w + x);
+            }
+            StringBuilder key = new StringBuilder().append(w).append('x').append(h).append(':');
+            for(long word : bits.toLongArray())
+                key.append(Long.toHexString(word)).append('.');
+            String candidate = key.toString();
+            if(best == null || candidate.compareTo(best) < 0)
+                best = candidate;
+        }
+        return best;
+    }
+
+    /**
+     * The owned living cells of one generation, indexed by position, and the union-find forest of the objects that
+     * own them.
+     */
+    private static class Neighbourhood
+    {
+        private final int[] parent;
+        private final Rule rule;
+        private final int[] nodes = new int[9];
+        private final int[] counts = new int[9];
+        private LongIntMap index;
+        private int[] owner;
+
+        Neighbourhood(int[] parent, Rule rule)
+        {
+            this.parent = parent;
+            this.rule = rule;
+        }
+
+        void index(long[] cells, int[] owner, int living)
+        {
+            this.owner = owner;
+            index = new LongIntMap(living);
+            for(int i = 0; i < living; i++)
+                index.addTo(cells[i], i + 1);
+        }
+
+        /**
+         * Works out the next state of cell (x, y), merging the objects around it if together they give it another
+         * fate than apart. The objects are taken as they were at the start of the generation, so the merges do not
+         * depend on the order the cells are visited in. Returns the object that owns the cell next generation, or -1
+         * if it will be dead.
+         */
+        int step(int x, int y)
+        {
+            int self = index.get(LongHashSet.pack(x, y)) - 1;
+            int distinct = 0;
+            if(self >= 0)
+            {
+                nodes[distinct] = owner[self];
+                counts[distinct++] = 0;
+            }
+            int total = 0;
+            for(int ny = y - 1; ny <= y + 1; ny++)
+            {
+                for(int nx = x - 1; nx <= x + 1; nx++)
+                {
+                    int neighbour = nx == x && ny == y ? -1 : index.get(LongHashSet.pack(nx, ny)) - 1;
+                    if(neighbour < 0)
+                        continue;
+                    int node = owner[neighbour];
+                    int k = 0;
+                    while(k < distinct && nodes[k] != node)
+                        k++;
+                    if(k == distinct)
+                    {
+                        nodes[distinct] = node;
+                        counts[distinct++] = 0;
+                    }
+                    counts[k]++;
+                    total++;
+                }
+            }
+            boolean alive = rule.nextState(self >= 0, total);
+            int apart = 0;
+            for(int k = 0; k < distinct; k++)
+                if(rule.nextState(k == 0 && self >= 0, counts[k]))
+                    apart++;
+            if(distinct > 1 && (alive ? apart != 1 : apart != 0))
+                for(int k = 1; k < distinct; k++)
+                    union(parent, nodes[0], nodes[k]);
+            return alive ? nodes[0] : -1;
+        }
+    }
+
+    /**
+     * Living cells of a region grouped into maximal horizontal runs, in row-major order.
+     */
+    private static class Runs
+    {
+        int[] y;
+        int[] start;
+        int[] end;
+        int size;
+        int[] rowStart;
+        int rows;
+
+        Runs(long[] cells, int count)
+        {
+            y = new int[Math.max(1, count)];
+            start = new int[y.length];
+            end = new int[y.length];
+            rowStart = new int[y.length + 1];
+            for(int i = 0; i < count; i++)
+            {
+                int cy = (int) (cells[i] >> 32);
+                int cx = (int) cells[i] ^ Integer.MIN_VALUE;
+                if(size > 0 && y[size - 1] == cy && end[size - 1] + 1 == cx)
+                {
+                    end[size - 1] = cx;
+                    continue;
+                }
+                if(size == 0 || y[size - 1] != cy)
+                    rowStart[rows++] = size;
+                y[size] = cy;
+                start[size] = cx;
+                end[size] = cx;
+                size++;
+            }
+            rowStart[rows] = size;
+        }
+    }
+
+    private static class Shape
+    {
+        final String canonical;
+        final String name;
+        final long[] cells;
+
+        Shape(String canonical, String name, long[] cells)
+        {
+            this.canonical = canonical;
+            this.name = name;
+            this.cells = cells;
+        }
+    }
+
+    public static class DetectedObject
+    {
+        private final Shape shape;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final int population;
+
+        DetectedObject(Shape shape, int x, int y, int width, int height, int population)
+        {
+            this.shape = shape;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.population = population;
+        }
+
+        /**
+         * Returns the name of the matching built-in pattern, or null for an unnamed object.
+         */
+        public String getName()
+        {
+            return shape.name;
+        }
+
+        public String getShape()
+        {
+            return shape.canonical;
+        }
+
+        public String getLabel()
+        {
+            return shape.name != null ? shape.name : shape.canonical;
+        }
+
+        public int getX()
+        {
+            return x;
+        }
+
+        public int getY()
+        {
+            return y;
+        }
+
+        public int getWidth()
+        {
+            return width;
+        }
+
+        public int getHeight()
+        {
+            return height;
+        }
+
+        public int getPopulation()
+        {
+            return population;
+        }
+    }
+}
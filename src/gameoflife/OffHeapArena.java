@@ -0,0 +1,91 @@
+package gameoflife;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+
+class OffHeapArena implements AutoCloseable
+{
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static
+    {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try
+        {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch(ReflectiveOperationException | RuntimeException e)
+        {
+            System.err.println("Off-heap memory will be released by the garbage collector: " + e);
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final ArrayList<ByteBuffer> buffers = new ArrayList<>();
+    private long bytesAllocated = 0;
+    private boolean closed = false;
+
+    public LongBuffer allocateLongs(int count)
+    {
+        if(closed)
+            throw new IllegalStateException("Arena is closed");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(count * Long.BYTES).order(ByteOrder.nativeOrder());
+        buffers.add(buffer);
+        bytesAllocated += buffer.capacity();
+        return buffer.asLongBuffer();
+    }
+
+    public long getBytesAllocated()
+    {
+        return bytesAllocated;
+    }
+
+    /**
+     * Releases every buffer, then throws if any of them could not be released.
+     */
+    @Override
+    public void close()
+    {
+        if(closed)
+            return;
+        closed = true;
+        ReflectiveOperationException failure = null;
+        for(ByteBuffer buffer : buffers)
+        {
+            try
+            {
+                release(buffer);
+            } catch(ReflectiveOperationException e)
+            {
+                if(failure == null)
+                    failure = e;
+            }
+        }
+        buffers.clear();
+        bytesAllocated = 0;
+        if(failure != null)
+            throw new IllegalStateException("Could not release off-heap buffers: " + failure.getMessage(), failure);
+    }
+
+    /**
+     * Frees a direct or mapped buffer now instead of when it is collected. Returns false when the JDK does not allow
+     * it, leaving the buffer to the garbage collector. The buffer and every view of it must not be used afterwards.
+     */
+    static boolean release(ByteBuffer buffer) throws ReflectiveOperationException
+    {
+        if(INVOKE_CLEANER == null)
+            return false;
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        return true;
+    }
+}
@@ -0,0 +1,183 @@
+package gameoflife;
+
+class OffHeapEngine implements StepEngine, RowKernel
+{
+    private int width;
+    private int height;
+    private int words;
+    private OffHeapArena arena;
+    private OffHeapGrid cells;
+    private OffHeapGrid next;
+    private Rule rule = Rule.CONWAY;
+    private final StripeStepper stepper = new StripeStepper();
+
+    public OffHeapEngine()
+    {
+        resize(0, 0);
+    }
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.OFF_HEAP;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        if(arena != null)
+            arena.close();
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        arena = new OffHeapArena();
+        cells = new OffHeapGrid(arena, words, height);
+        next = new OffHeapGrid(arena, words, height);
+    }
+
+    @Override
+    public void dispose()
+    {
+        arena.close();
+    }
+
+    public long getBytesAllocated()
+    {
+        return arena.getBytesAllocated();
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public void clear()
+    {
+        long[] empty = new long[words];
+        for(int y = 0; y < height; y++)
+            cells.writeRow(y, empty);
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        return (cells.getWord(y, x >>> 6) & (1L << x)) != 0;
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        long word = cells.getWord(y, x >>> 6);
+        cells.setWord(y, x >>> 6, living ? word | (1L << x) : word & ~(1L << x));
+    }
+
+    @Override
+    public void readRow(int y, long[] row)
+    {
+        cells.readRow(y, row);
+    }
+
+    @Override
+    public void writeRow(int y, long[] row)
+    {
+        cells.writeRow(y, row);
+        cells.setWord(y, words - 1, row[words - 1] & (-1L >>> (-width & 63)));
+    }
+
+    @Override
+    public boolean hasRowStorage()
+    {
+        return true;
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+    }
+
+    @Override
+    public int getParallelism()
+    {
+        return stepper.getParallelism();
+    }
+
+    @Override
+    public void setParallelism(int parallelism)
+    {
+        stepper.setParallelism(parallelism);
+    }
+
+    @Override
+    public void step()
+    {
+        if(width == 0 || height == 0)
+            return;
+        stepper.run(height, this);
+        OffHeapGrid swap = cells;
+        cells = next;
+        next = swap;
+    }
+
+    @Override
+    public void stepRows(int from, int to)
+    {
+        long[] up = new long[words];
+        long[] mid = new long[words];
+        long[] down = new long[words];
+        long[] out = new long[words];
+        cells.readRow(from == 0 ? height - 1 : from - 1, up);
+        cells.readRow(from, mid);
+        for(int y = from; y < to; y++)
+        {
+            cells.readRow(y == height - 1 ? 0 : y + 1, down);
+            BitKernel.stepRow(up, mid, down, out, width, rule);
+            next.writeRow(y, out);
+            long[] swap = up;
+            up = mid;
+            mid = down;
+            down = swap;
+        }
+    }
+
+    @Override
+    public void forEachLiving(int minX, int minY, int maxX, int maxY, CellVisitor visitor)
+    {
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        maxX = Math.min(maxX, width - 1);
+        maxY = Math.min(maxY, height - 1);
+        if(minX > maxX)
+            return;
+        for(int y = minY; y <= maxY; y++)
+        {
+            for(int i = minX >>> 6; i <= maxX >>> 6; i++)
+            {
+                long word = cells.getWord(y, i);
+                while(word != 0)
+                {
+                    int x = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if(x >= minX && x <= maxX)
+                        visitor.visit(x, y);
+                }
+            }
+        }
+    }
+}
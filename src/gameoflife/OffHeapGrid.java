@@ -0,0 +1,63 @@
+package gameoflife;
+
+import java.nio.LongBuffer;
+
+class OffHeapGrid
+{
+    private static final int MAX_SEGMENT_LONGS = 1 << 27;
+
+    private final int words;
+    private final int rowsPerSegment;
+    private final LongBuffer[] segments;
+
+    public OffHeapGrid(OffHeapArena arena, int words, int height)
+    {
+        this.words = words;
+        rowsPerSegment = rowsPerSegment(words);
+        segments = new LongBuffer[segmentCount(words, height)];
+        for(int s = 0; s < segments.length; s++)
+            segments[s] = arena.allocateLongs(segmentRows(words, height, s) * words);
+    }
+
+    public OffHeapGrid(LongBuffer[] segments, int words)
+    {
+        this.words = words;
+        this.segments = segments;
+        rowsPerSegment = rowsPerSegment(words);
+    }
+
+    public static int rowsPerSegment(int words)
+    {
+        return Math.max(1, MAX_SEGMENT_LONGS / Math.max(1, words));
+    }
+
+    public static int segmentCount(int words, int height)
+    {
+        return (height + rowsPerSegment(words) - 1) / rowsPerSegment(words);
+    }
+
+    public static int segmentRows(int words, int height, int segment)
+    {
+        return Math.min(rowsPerSegment(words), height - segment * rowsPerSegment(words));
+    }
+
+    public long getWord(int y, int i)
+    {
+        return segments[y / rowsPerSegment].get((y % rowsPerSegment) * words + i);
+    }
+
+    public void setWord(int y, int i, long word)
+    {
+        segments[y / rowsPerSegment].put((y % rowsPerSegment) * words + i, word);
+    }
+
+    public void readRow(int y, long[] row)
+    {
+        segments[y / rowsPerSegment].get((y % rowsPerSegment) * words, row, 0, words);
+    }
+
+    public void writeRow(int y, long[] row)
+    {
+        segments[y / rowsPerSegment].put((y % rowsPerSegment) * words, row, 0, words);
+    }
+}
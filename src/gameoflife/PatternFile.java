@@ -0,0 +1,428 @@
+package gameoflife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Patterns in the formats other Life programs exchange: RLE, Life 1.06 and Macrocell. RLE and Life 1.06 are parsed a
+ * byte at a time straight into a run list, and Macrocell into its quadtree, so no object is created per cell. Bounded
+ * grids are then filled with a single bitmap write and HashLife is handed a quadtree.
+ */
+class PatternFile
+{
+    public enum Format
+    {
+        RLE("rle"), LIFE_106("lif"), MACROCELL("mc");
+
+        private final String extension;
+
+        Format(String extension)
+        {
+            this.extension = extension;
+        }
+
+        public String getExtension()
+        {
+            return extension;
+        }
+
+        /**
+         * Returns the format for a file name, defaulting to RLE.
+         */
+        public static Format of(File file)
+        {
+            String name = file.getName().toLowerCase();
+            for(Format format : values())
+                if(name.endsWith("." + format.extension))
+                    return format;
+            if(name.endsWith(".life"))
+                return LIFE_106;
+            return RLE;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int LINE_LENGTH = 70;
+    private static final int MAX_RUN = 1 << 28;
+
+    private final Format format;
+    private final Rule rule;
+    private final long generation;
+    private final RunList runs;
+    private final Macrocell macrocell;
+
+    private PatternFile(Format format, Rule rule, long generation, RunList runs, Macrocell macrocell)
+    {
+        this.format = format;
+        this.rule = rule;
+        this.generation = generation;
+        this.runs = runs;
+        this.macrocell = macrocell;
+    }
+
+    /**
+     * Reads a pattern, recognising Life 1.06 and Macrocell files by their first line and taking anything else as RLE.
+     */
+    public static PatternFile load(File file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            in.mark(16);
+            byte[] start = new byte[10];
+            int length = in.read(start);
+            in.reset();
+            String head = length > 0 ? new String(start, 0, length, StandardCharsets.US_ASCII) : "";
+            try
+            {
+                if(head.startsWith("[M2]"))
+                {
+                    Macrocell macrocell = Macrocell.read(new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII)));
+                    return new PatternFile(Format.MACROCELL, macrocell.getRule(), macrocell.getGeneration(), null, macrocell);
+                }
+                if(head.startsWith("#Life 1.06"))
+                    return new PatternFile(Format.LIFE_106, null, 0, readLife106(in), null);
+                return readRle(in);
+            } catch(IllegalArgumentException e)
+            {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static PatternFile readRle(InputStream in) throws IOException
+    {
+        Rule rule = null;
+        int x = 0;
+        int y = 0;
+        long generation = 0;
+        int c = in.read();
+        while(c == '#' || c == '\r' || c == '\n' || c == ' ' || c == '\t')
+        {
+            if(c == '#')
+            {
+                String comment = readLine(in);
+                if(comment.startsWith("CXRLE"))
+                {
+                    for(String field : comment.substring(5).trim().split("\\s+"))
+                    {
+                        if(field.startsWith("Pos="))
+                        {
+                            String[] position = field.substring(4).split(",");
+                            x = Integer.parseInt(position[0].trim());
+                            y = Integer.parseInt(position[1].trim());
+                        } else if(field.startsWith("Gen="))
+                            generation = Long.parseLong(field.substring(4));
+                    }
+                }
+            }
+            c = in.read();
+        }
+        if(c == 'x')
+        {
+            String header = "x" + readLine(in);
+            for(String field : header.split(","))
+            {
+                String[] pair = field.split("=", 2);
+                if(pair.length == 2 && pair[0].trim().equalsIgnoreCase("rule"))
+                {
+                    String text = pair[1].trim();
+                    int colon = text.indexOf(':');
+                    rule = Rule.parse(colon >= 0 ? text.substring(0, colon) : text);
+                }
+            }
+            c = in.read();
+        }
+        RunList runs = new RunList();
+        int left = x;
+        int count = 0;
+        for(; c >= 0 && c != '!'; c = in.read())
+        {
+            if(c >= '0' && c <= '9')
+            {
+                count = count * 10 + c - '0';
+                if(count > MAX_RUN)
+                    throw new IOException("Run length too large in RLE data");
+                continue;
+            }
+            int n = Math.max(1, count);
+            count = 0;
+            if(c == 'b' || c == '.')
+                x += n;
+            else if(c == 'o' || c >= 'A' && c <= 'X')
+            {
+                runs.addRun(y, x, x + n - 1);
+                x += n;
+            } else if(c == '$')
+            {
+                y += n;
+                x = left;
+            } else if(c == '#')
+                readLine(in);
+            else if(c != ' ' && c != '\t' && c != '\r' && c != '\n')
+                throw new IOException("Unexpected character '" + (char) c + "' in RLE data");
+        }
+        return new PatternFile(Format.RLE, rule, generation, runs, null);
+    }
+
+    private static RunList readLife106(InputStream in) throws IOException
+    {
+        readLine(in);
+        long[] cells = new long[256];
+        int count = 0;
+        int[] pair = new int[2];
+        int c = in.read();
+        while(c >= 0)
+        {
+            if(c == '#')
+            {
+                readLine(in);
+                c = in.read();
+                continue;
+            }
+            int fields = 0;
+            while(c >= 0 && c != '\n')
+            {
+                if(c == '-' || c >= '0' && c <= '9')
+                {
+                    if(fields == 2)
+                        throw new IOException("Expected two coordinates per line in Life 1.06 data");
+                    boolean negative = c == '-';
+                    long value = negative ? 0 : c - '0';
+                    for(c = in.read(); c >= '0' && c <= '9'; c = in.read())
+                    {
+                        value = value * 10 + c - '0';
+                        if(value > Integer.MAX_VALUE)
+                            throw new IOException("Coordinate out of range in Life 1.06 data");
+                    }
+                    pair[fields++] = (int) (negative ? -value : value);
+                } else if(c == ' ' || c == '\t' || c == '\r')
+                    c = in.read();
+                else
+                    throw new IOException("Unexpected character '" + (char) c + "' in Life 1.06 data");
+            }
+            if(fields == 2)
+            {
+                if(count == cells.length)
+                    cells = Arrays.copyOf(cells, count * 2);
+                cells[count++] = RunList.sortKey(pair[0], pair[1]);
+            } else if(fields == 1)
+                throw new IOException("Expected two coordinates per line in Life 1.06 data");
+            c = in.read();
+        }
+        return RunList.ofSorted(cells, count);
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        for(int c = in.read(); c >= 0 && c != '\n'; c = in.read())
+            if(c != '\r')
+                line.append((char) c);
+        return line.toString();
+    }
+
+    /**
+     * Writes the grid in the format given by the file's extension.
+     */
+    public static void save(File file, StepEngine grid, long generation) throws IOException
+    {
+        Format format = Format.of(file);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.US_ASCII.newEncoder(), BUFFER_SIZE), BUFFER_SIZE))
+        {
+            switch(format)
+            {
+                case MACROCELL:
+                    Macrocell macrocell = grid instanceof HashLifeEngine ? ((HashLifeEngine) grid).toMacrocell(generation)
+                            : Macrocell.of(RunList.of(grid), grid.getRule(), generation);
+                    macrocell.write(out);
+                    break;
+                case LIFE_106:
+                    writeLife106(out, RunList.of(grid));
+                    break;
+                default:
+                    writeRle(out, RunList.of(grid), grid.getRule(), generation);
+            }
+        }
+    }
+
+    private static void writeLife106(Writer out, RunList runs) throws IOException
+    {
+        out.write("#Life 1.06\n");
+        for(int r = 0; r < runs.count; r++)
+        {
+            String y = " " + runs.runs[3 * r] + "\n";
+            for(int x = runs.runs[3 * r + 1]; x <= runs.runs[3 * r + 2]; x++)
+            {
+                out.write(Integer.toString(x));
+                out.write(y);
+            }
+        }
+    }
+
+    private static void writeRle(Writer out, RunList runs, Rule rule, long generation) throws IOException
+    {
+        int minX = runs.count == 0 ? 0 : runs.getMinX();
+        int minY = runs.count == 0 ? 0 : runs.getMinY();
+        int width = runs.count == 0 ? 0 : runs.getMaxX() - minX + 1;
+        int height = runs.count == 0 ? 0 : runs.getMaxY() - minY + 1;
+        out.write("#CXRLE Pos=" + minX + "," + minY + (generation != 0 ? " Gen=" + generation : "") + "\n");
+        out.write("x = " + width + ", y = " + height + ", rule = " + rule + "\n");
+        RleLine line = new RleLine(out);
+        int y = minY;
+        int x = minX;
+        for(int r = 0; r < runs.count; r++)
+        {
+            int row = runs.runs[3 * r];
+            if(row != y)
+            {
+                line.append(row - y, '$');
+                y = row;
+                x = minX;
+            }
+            line.append(runs.runs[3 * r + 1] - x, 'b');
+            line.append(runs.runs[3 * r + 2] - runs.runs[3 * r + 1] + 1, 'o');
+            x = runs.runs[3 * r + 2] + 1;
+        }
+        line.append(1, '!');
+        line.finish();
+    }
+
+    /**
+     * Wraps RLE tokens at LINE_LENGTH characters without splitting a token.
+     */
+    private static class RleLine
+    {
+        private final Writer out;
+        private int length;
+
+        RleLine(Writer out)
+        {
+            this.out = out;
+        }
+
+        void append(int count, char tag) throws IOException
+        {
+            if(count <= 0)
+                return;
+            String token = count == 1 ? String.valueOf(tag) : count + String.valueOf(tag);
+            if(length + token.length() > LINE_LENGTH)
+            {
+                out.write('\n');
+                length = 0;
+            }
+            out.write(token);
+            length += token.length();
+        }
+
+        void finish() throws IOException
+        {
+            out.write('\n');
+        }
+    }
+
+    public Format getFormat()
+    {
+        return format;
+    }
+
+    /**
+     * Returns the rule given in the file, or null if there was none.
+     */
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Returns {minX, minY, maxX, maxY} of the living cells, or null if there are none.
+     */
+    public long[] getBounds()
+    {
+        if(macrocell != null)
+            return macrocell.getBounds();
+        if(runs.count == 0)
+            return null;
+        return new long[]{runs.getMinX(), runs.getMinY(), runs.getMaxX(), runs.getMaxY()};
+    }
+
+    /**
+     * Returns the living cells as runs in the file's coordinates, expanding a Macrocell quadtree.
+     */
+    RunList getRuns()
+    {
+        if(macrocell == null)
+            return runs;
+        RunList cells = new RunList();
+        long[] bounds = macrocell.getBounds();
+        if(bounds != null)
+        {
+            if(bounds[0] < Integer.MIN_VALUE || bounds[1] < Integer.MIN_VALUE || bounds[2] > Integer.MAX_VALUE || bounds[3] > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("The pattern extends beyond 32-bit coordinates");
+            macrocell.addRuns((int) bounds[0], (int) bounds[1], (int) bounds[2], (int) bounds[3], cells);
+        }
+        return cells;
+    }
+
+    /**
+     * Replaces the contents of the grid with the pattern. On a bounded grid the pattern is centred and clipped, and
+     * written as one bitmap; an unbounded grid keeps the file's coordinates.
+     */
+    public void placeInto(StepEngine grid)
+    {
+        if(grid instanceof HashLifeEngine)
+        {
+            ((HashLifeEngine) grid).load(macrocell != null ? macrocell : Macrocell.of(runs, rule, generation));
+            return;
+        }
+        long[] bounds = getBounds();
+        if(bounds != null && (bounds[0] < Integer.MIN_VALUE || bounds[1] < Integer.MIN_VALUE || bounds[2] > Integer.MAX_VALUE || bounds[3] > Integer.MAX_VALUE))
+            throw new IllegalArgumentException("The pattern extends beyond the coordinates of a " + grid.getName() + " universe");
+        RunList cells = runs;
+        if(macrocell != null && bounds != null)
+        {
+            cells = new RunList();
+            if(grid.isBounded())
+            {
+                long centreX = (bounds[0] + bounds[2]) / 2;
+                long centreY = (bounds[1] + bounds[3]) / 2;
+                macrocell.addRuns((int) Math.max(bounds[0], centreX - grid.getWidth() / 2), (int) Math.max(bounds[1], centreY - grid.getHeight() / 2),
+                        (int) Math.min(bounds[2], centreX + grid.getWidth() / 2), (int) Math.min(bounds[3], centreY + grid.getHeight() / 2), cells);
+            } else
+                macrocell.addRuns(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, cells);
+        }
+        if(!grid.isBounded())
+        {
+            grid.clear();
+            for(int r = 0; r < cells.count; r++)
+                for(int x = cells.runs[3 * r + 1]; x <= cells.runs[3 * r + 2]; x++)
+                    grid.setLiving(x, cells.runs[3 * r], true);
+            return;
+        }
+        long[] bits = new long[((grid.getWidth() + 63) >>> 6) * grid.getHeight()];
+        if(bounds != null)
+        {
+            int dx = (int) ((grid.getWidth() - 1) / 2 - (bounds[0] + bounds[2]) / 2);
+            int dy = (int) ((grid.getHeight() - 1) / 2 - (bounds[1] + bounds[3]) / 2);
+            cells.orInto(bits, grid.getWidth(), grid.getHeight(), dx, dy);
+        }
+        grid.writeBitmap(bits);
+    }
+}
@@ -0,0 +1,354 @@
+package gameoflife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The named patterns of the pattern menu. The built-in patterns are compiled ahead of time into the patterns.bin
+ * resource: an index of names and sizes followed by every pattern as rows of packed bits. Only the index is read up
+ * front and a pattern is decoded the first time it is asked for. Pattern files in the patterns directory are listed by
+ * name and parsed on first use, so adding hundreds of them costs startup nothing but a directory listing.
+ * <p>
+ * Running this class compiles a directory of RLE, Life 1.06 or Macrocell files into a new patterns.bin. The Maven
+ * build runs it on the patterns directory next to this class, so the packaged resource always matches those files.
+ */
+class PatternLibrary
+{
+    public static final String DIRECTORY = "patterns";
+    private static final String RESOURCE = "patterns.bin";
+    private static final int MAGIC = 0x474F4C50;
+    private static final int VERSION = 1;
+
+    private static PatternLibrary builtIn;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Returns the patterns compiled into the application, reading their index on the first call.
+     */
+    public static synchronized PatternLibrary builtIn()
+    {
+        if(builtIn == null)
+        {
+            builtIn = new PatternLibrary();
+            try
+            {
+                builtIn.readIndex();
+            } catch(IOException e)
+            {
+                throw new IllegalStateException("Cannot read the pattern library: " + e.getMessage(), e);
+            }
+        }
+        return builtIn;
+    }
+
+    /**
+     * Returns the built-in patterns together with those in the patterns directory, which replace built-in patterns of
+     * the same name.
+     */
+    public static PatternLibrary create()
+    {
+        PatternLibrary library = new PatternLibrary();
+        library.entries.putAll(builtIn().entries);
+        library.addDirectory(new File(DIRECTORY));
+        return library;
+    }
+
+    /**
+     * Lists the pattern files of a directory without reading them. A missing directory adds nothing.
+     */
+    public void addDirectory(File directory)
+    {
+        File[] files = directory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return patternName(name) != null;
+            }
+        });
+        if(files == null)
+            return;
+        for(File file : files)
+            entries.put(patternName(file.getName()), new Entry(file));
+    }
+
+    /**
+     * Returns the pattern names in alphabetical order.
+     */
+    public String[] getNames()
+    {
+        ArrayList<String> names = new ArrayList<>(entries.keySet());
+        Collections.sort(names);
+        return names.toArray(new String[0]);
+    }
+
+    public boolean contains(String name)
+    {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Returns the named pattern, decoding it on first use, or null if there is no such pattern.
+     *
+     * @throws IllegalArgumentException if the pattern's file cannot be read
+     */
+    public Pattern get(String name)
+    {
+        Entry entry = entries.get(name);
+        if(entry == null)
+            return null;
+        try
+        {
+            return entry.load();
+        } catch(IOException e)
+        {
+            throw new IllegalArgumentException("Cannot read pattern " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String patternName(String fileName)
+    {
+        int dot = fileName.lastIndexOf('.');
+        if(dot <= 0)
+            return null;
+        String extension = fileName.substring(dot + 1).toLowerCase();
+        if(!extension.equals("rle") && !extension.equals("lif") && !extension.equals("life") && !extension.equals("mc"))
+            return null;
+        return fileName.substring(0, dot);
+    }
+
+    private void readIndex() throws IOException
+    {
+        try(DataInputStream in = openResource())
+        {
+            if(in.readInt() != MAGIC)
+                throw new IOException("Not a pattern library");
+            int version = in.readInt();
+            if(version != VERSION)
+                throw new IOException("Unsupported pattern library version " + version);
+            int count = in.readInt();
+            int bodyStart = 16 + in.readInt();
+            for(int i = 0; i < count; i++)
+            {
+                String name = in.readUTF();
+                int width = in.readInt();
+                int height = in.readInt();
+                int offset = in.readInt();
+                entries.put(name, new Entry(width, height, bodyStart + offset));
+            }
+        }
+    }
+
+    private static DataInputStream openResource() throws IOException
+    {
+        InputStream in = PatternLibrary.class.getResourceAsStream(RESOURCE);
+        if(in == null)
+            throw new IOException(RESOURCE + " not found");
+        return new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * Compiles the pattern files of a directory into a library resource.
+     * <p>
+     * Usage: PatternLibrary &lt;pattern directory&gt; &lt;output file&gt;
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length != 2)
+        {
+            System.err.println("Usage: PatternLibrary <pattern directory> <output file>");
+            System.exit(1);
+        }
+        PatternLibrary library = new PatternLibrary();
+        library.addDirectory(new File(args[0]));
+        String[] names = library.getNames();
+        Pattern[] patterns = new Pattern[names.length];
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(index);
+        int offset = 0;
+        for(int i = 0; i < names.length; i++)
+        {
+            patterns[i] = library.get(names[i]);
+            indexOut.writeUTF(names[i]);
+            indexOut.writeInt(patterns[i].width);
+            indexOut.writeInt(patterns[i].height);
+            indexOut.writeInt(offset);
+            offset += patterns[i].bits.length * 8;
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[1]))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.length);
+            out.writeInt(index.size());
+            index.writeTo(out);
+            for(Pattern pattern : patterns)
+                for(long word : pattern.bits)
+                    out.writeLong(word);
+        }
+        System.out.println("Compiled " + names.length + " patterns into " + args[1] + " (" + (16 + index.size() + offset) + " bytes)");
+    }
+
+    /**
+     * Where a pattern comes from: a file to parse or a span of the library resource. The decoded pattern is kept.
+     */
+    private static class Entry
+    {
+        private final File file;
+        private final int width;
+        private final int height;
+        private final int offset;
+        private Pattern pattern;
+
+        Entry(File file)
+        {
+            this.file = file;
+            this.width = 0;
+            this.height = 0;
+            this.offset = 0;
+        }
+
+        Entry(int width, int height, int offset)
+        {
+            this.file = null;
+            this.width = width;
+            this.height = height;
+            this.offset = offset;
+        }
+
+        synchronized Pattern load() throws IOException
+        {
+            if(pattern != null)
+                return pattern;
+            if(file != null)
+                pattern = Pattern.of(PatternFile.load(file).getRuns());
+            else
+            {
+                long[] bits = new long[((width + 63) >>> 6) * height];
+                try(DataInputStream in = openResource())
+                {
+                    in.skipNBytes(offset);
+                    for(int i = 0; i < bits.length; i++)
+                        bits[i] = in.readLong();
+                }
+                pattern = new Pattern(width, height, bits);
+            }
+            return pattern;
+        }
+    }
+
+    /**
+     * A pattern as rows of packed bits, laid out as in StepEngine.readBitmap, and stamped into a grid a word at a
+     * time.
+     */
+    public static class Pattern
+    {
+        private final int width;
+        private final int height;
+        private final long[] bits;
+
+        private Pattern(int width, int height, long[] bits)
+        {
+            this.width = width;
+            this.height = height;
+            this.bits = bits;
+        }
+
+        static Pattern of(RunList runs)
+        {
+            if(runs.count == 0)
+                return new Pattern(0, 0, new long[0]);
+            int width = runs.getMaxX() - runs.getMinX() + 1;
+            int height = runs.getMaxY() - runs.getMinY() + 1;
+            long[] bits = new long[((width + 63) >>> 6) * height];
+            runs.orInto(bits, width, height, -runs.getMinX(), -runs.getMinY());
+            return new Pattern(width, height, bits);
+        }
+
+        public int getWidth()
+        {
+            return width;
+        }
+
+        public int getHeight()
+        {
+            return height;
+        }
+
+        /**
+         * Adds the pattern to the middle of the grid.
+         */
+        public void place(StepEngine grid)
+        {
+            stamp(grid, (grid.getWidth() - 1) / 2 - width / 2, (grid.getHeight() - 1) / 2 - height / 2);
+        }
+
+        /**
+         * Adds the pattern to the grid with its top left corner at (left, top), clipped to the edges of a bounded
+         * grid. On a grid that stores rows of words, only the rows the pattern covers are read, have the pattern ORed
+         * in a word at a time and are written back. Other grids, and grids under a multi-state rule whose dying
+         * cells a row of bits cannot hold, have the pattern's cells set one by one.
+         */
+        public void stamp(StepEngine grid, int left, int top)
+        {
+            if(height == 0)
+                return;
+            int words = (width + 63) >>> 6;
+            if(!grid.isBounded() || !grid.hasRowStorage() || grid.getRule().isGenerations())
+            {
+                for(int r = 0; r < height; r++)
+                {
+                    int y = top + r;
+                    if(grid.isBounded() && (y < 0 || y >= grid.getHeight()))
+                        continue;
+                    for(int x = RunList.nextSet(bits, r * words, words, 0); x >= 0; x = RunList.nextSet(bits, r * words, words, x + 1))
+                        if(!grid.isBounded() || left + x >= 0 && left + x < grid.getWidth())
+                            grid.setLiving(left + x, y, true);
+                }
+                return;
+            }
+            int gridWords = (grid.getWidth() + 63) >>> 6;
+            long[] target = new long[gridWords];
+            for(int r = 0; r < height; r++)
+            {
+                int y = top + r;
+                if(y < 0 || y >= grid.getHeight())
+                    continue;
+                grid.readRow(y, target);
+                for(int i = 0; i < words; i++)
+                {
+                    long word = bits[r * words + i];
+                    int x = left + (i << 6);
+                    if(x < 0)
+                    {
+                        if(x <= -64)
+                            continue;
+                        word >>>= -x;
+                        x = 0;
+                    }
+                    int d = x >>> 6;
+                    if(word == 0 || d >= gridWords)
+                        continue;
+                    int shift = x & 63;
+                    target[d] |= word << shift;
+                    if(shift != 0 && d + 1 < gridWords)
+                        target[d + 1] |= word >>> (64 - shift);
+                }
+                grid.writeRow(y, target);
+            }
+        }
+    }
+}
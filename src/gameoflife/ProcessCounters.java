@@ -0,0 +1,78 @@
+package gameoflife;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+class ProcessCounters
+{
+    private static final Path STAT = Paths.get("/proc/self/stat");
+    private static final Path IO = Paths.get("/proc/self/io");
+
+    private long minorFaults;
+    private long majorFaults;
+    private long bytesRead;
+    private long bytesWritten;
+
+    private ProcessCounters() {}
+
+    public static ProcessCounters sample()
+    {
+        ProcessCounters counters = new ProcessCounters();
+        try
+        {
+            String stat = new String(Files.readAllBytes(STAT));
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            counters.minorFaults = Long.parseLong(fields[7]);
+            counters.majorFaults = Long.parseLong(fields[9]);
+        } catch(IOException | RuntimeException e) {}
+        try
+        {
+            for(String line : Files.readAllLines(IO))
+            {
+                if(line.startsWith("read_bytes:"))
+                    counters.bytesRead = Long.parseLong(line.substring(11).trim());
+                else if(line.startsWith("write_bytes:"))
+                    counters.bytesWritten = Long.parseLong(line.substring(12).trim());
+            }
+        } catch(IOException | RuntimeException e) {}
+        return counters;
+    }
+
+    public ProcessCounters since(ProcessCounters start)
+    {
+        ProcessCounters delta = new ProcessCounters();
+        delta.minorFaults = minorFaults - start.minorFaults;
+        delta.majorFaults = majorFaults - start.majorFaults;
+        delta.bytesRead = bytesRead - start.bytesRead;
+        delta.bytesWritten = bytesWritten - start.bytesWritten;
+        return delta;
+    }
+
+    public long getMinorFaults()
+    {
+        return minorFaults;
+    }
+
+    public long getMajorFaults()
+    {
+        return majorFaults;
+    }
+
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    public long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Page faults: " + majorFaults + " major, " + minorFaults + " minor; I/O: " + bytesRead / 1024 + " KB read, " + bytesWritten / 1024 + " KB written";
+    }
+}
@@ -0,0 +1,6 @@
+package gameoflife;
+
+interface RowKernel
+{
+    void stepRows(int from, int to);
+}
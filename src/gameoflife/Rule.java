@@ -0,0 +1,165 @@
+package gameoflife;
+
+class Rule
+{
+    public static final Rule CONWAY = new Rule(1 << 3, (1 << 2) | (1 << 3), 2);
+    public static final int MAX_STATES = 16;
+
+    private final int birth;
+    private final int survival;
+    private final int states;
+
+    private Rule(int birth, int survival, int states)
+    {
+        this.birth = birth;
+        this.survival = survival;
+        this.states = states;
+    }
+
+    public static Rule parse(String rulestring)
+    {
+        String text = rulestring.trim().toUpperCase().replace(" ", "");
+        String[] parts = text.split("/", -1);
+        if(parts.length < 2 || parts.length > 3)
+            throw new IllegalArgumentException("Invalid rule: " + rulestring);
+        Integer birth = null, survival = null;
+        int states = 2;
+        boolean lettered = text.indexOf('B') >= 0 || text.indexOf('S') >= 0;
+        for(int i = 0; i < parts.length; i++)
+        {
+            String part = parts[i];
+            if(lettered)
+            {
+                if(part.startsWith("B") && birth == null)
+                    birth = mask(part.substring(1), rulestring);
+                else if(part.startsWith("S") && survival == null)
+                    survival = mask(part.substring(1), rulestring);
+                else if(i == 2)
+                    states = count(part.startsWith("C") || part.startsWith("G") ? part.substring(1) : part, rulestring);
+                else
+                    throw new IllegalArgumentException("Invalid rule: " + rulestring);
+            } else if(i == 0)
+                survival = mask(part, rulestring);
+            else if(i == 1)
+                birth = mask(part, rulestring);
+            else
+                states = count(part, rulestring);
+        }
+        if(birth == null || survival == null)
+            throw new IllegalArgumentException("Invalid rule: " + rulestring);
+        return new Rule(birth, survival, states);
+    }
+
+    private static int mask(String digits, String rulestring)
+    {
+        int mask = 0;
+        for(char c : digits.toCharArray())
+        {
+            if(c < '0' || c > '8')
+                throw new IllegalArgumentException("Invalid rule: " + rulestring);
+            mask |= 1 << (c - '0');
+        }
+        return mask;
+    }
+
+    private static int count(String digits, String rulestring)
+    {
+        try
+        {
+            int states = Integer.parseInt(digits);
+            if(states >= 2 && states <= MAX_STATES)
+                return states;
+        } catch(NumberFormatException e) {}
+        throw new IllegalArgumentException("Invalid number of states (2-" + MAX_STATES + "): " + rulestring);
+    }
+
+    public int getBirth()
+    {
+        return birth;
+    }
+
+    public int getSurvival()
+    {
+        return survival;
+    }
+
+    public int getStates()
+    {
+        return states;
+    }
+
+    public boolean isConway()
+    {
+        return equals(CONWAY);
+    }
+
+    public boolean isGenerations()
+    {
+        return states > 2;
+    }
+
+    public boolean bornFromNothing()
+    {
+        return (birth & 1) != 0;
+    }
+
+    public boolean nextState(boolean living, int neighbours)
+    {
+        return ((living ? survival : birth) & (1 << neighbours)) != 0;
+    }
+
+    public byte[] twoStateTable()
+    {
+        byte[] table = new byte[32];
+        for(int n = 0; n <= 8; n++)
+        {
+            table[n] = (byte) (nextState(false, n) ? 1 : 0);
+            table[16 | n] = (byte) (nextState(true, n) ? 1 : 0);
+        }
+        return table;
+    }
+
+    public byte[] generationsTable()
+    {
+        byte[] table = new byte[states << 4];
+        for(int n = 0; n <= 8; n++)
+        {
+            table[n] = (byte) (nextState(false, n) ? 1 : 0);
+            table[16 | n] = (byte) (nextState(true, n) ? 1 : (states > 2 ? 2 : 0));
+            for(int s = 2; s < states; s++)
+                table[(s << 4) | n] = (byte) ((s + 1) % states);
+        }
+        return table;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(!(o instanceof Rule))
+            return false;
+        Rule r = (Rule) o;
+        return birth == r.birth && survival == r.survival && states == r.states;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (birth * 31 + survival) * 31 + states;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder("B");
+        for(int n = 0; n <= 8; n++)
+            if((birth & (1 << n)) != 0)
+                text.append(n);
+        text.append("/S");
+        for(int n = 0; n <= 8; n++)
+            if((survival & (1 << n)) != 0)
+                text.append(n);
+        if(states > 2)
+            text.append("/C").append(states);
+        return text.toString();
+    }
+}
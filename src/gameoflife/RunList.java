@@ -0,0 +1,177 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Horizontal runs of living cells as (y, start, end) triples in row-major order.
+ */
+class RunList
+{
+    int[] runs = new int[48];
+    int count;
+
+    /**
+     * Collects the runs of a grid. Bounded grids are scanned a word at a time from their bitmap.
+     */
+    public static RunList of(StepEngine grid)
+    {
+        RunList list = new RunList();
+        if(grid.isBounded())
+        {
+            int width = grid.getWidth();
+            int words = (width + 63) >>> 6;
+            long[] bits = new long[words * grid.getHeight()];
+            grid.readBitmap(bits);
+            for(int y = 0; y < grid.getHeight(); y++)
+            {
+                int base = y * words;
+                int x = nextSet(bits, base, words, 0);
+                while(x >= 0)
+                {
+                    int end = nextClear(bits, base, words, x);
+                    list.addRun(y, x, end - 1);
+                    x = nextSet(bits, base, words, end);
+                }
+            }
+            return list;
+        }
+        long[][] cells = new long[1][64];
+        int[] count = new int[1];
+        grid.forEachLiving(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                if(count[0] == cells[0].length)
+                    cells[0] = Arrays.copyOf(cells[0], count[0] * 2);
+                cells[0][count[0]++] = sortKey(x, y);
+            }
+        });
+        return ofSorted(cells[0], count[0]);
+    }
+
+    /**
+     * Builds the runs of cells given as sortKey values, sorting them first.
+     */
+    public static RunList ofSorted(long[] cells, int count)
+    {
+        Arrays.parallelSort(cells, 0, count);
+        RunList list = new RunList();
+        for(int i = 0; i < count; i++)
+            list.add((int) cells[i] ^ Integer.MIN_VALUE, (int) (cells[i] >> 32));
+        return list;
+    }
+
+    /**
+     * Returns a key that orders cells by row, then column.
+     */
+    public static long sortKey(int x, int y)
+    {
+        return ((long) y << 32) | ((x ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    void add(int x, int y)
+    {
+        if(count > 0 && runs[3 * count - 3] == y && runs[3 * count - 1] + 1 == x)
+            runs[3 * count - 1] = x;
+        else if(count == 0 || runs[3 * count - 3] != y || runs[3 * count - 1] < x)
+            addRun(y, x, x);
+    }
+
+    void addRun(int y, int start, int end)
+    {
+        if(3 * count == runs.length)
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        runs[3 * count] = y;
+        runs[3 * count + 1] = start;
+        runs[3 * count + 2] = end;
+        count++;
+    }
+
+    public int getMinX()
+    {
+        int minX = Integer.MAX_VALUE;
+        for(int r = 0; r < count; r++)
+            minX = Math.min(minX, runs[3 * r + 1]);
+        return minX;
+    }
+
+    public int getMaxX()
+    {
+        int maxX = Integer.MIN_VALUE;
+        for(int r = 0; r < count; r++)
+            maxX = Math.max(maxX, runs[3 * r + 2]);
+        return maxX;
+    }
+
+    public int getMinY()
+    {
+        return count == 0 ? Integer.MAX_VALUE : runs[0];
+    }
+
+    public int getMaxY()
+    {
+        return count == 0 ? Integer.MIN_VALUE : runs[3 * count - 3];
+    }
+
+    /**
+     * ORs the runs, shifted by (dx, dy), into a bitmap of the given size laid out as in StepEngine.readBitmap. Runs
+     * are set a word at a time and clipped to the bitmap.
+     */
+    public void orInto(long[] bits, int width, int height, int dx, int dy)
+    {
+        int words = (width + 63) >>> 6;
+        for(int r = 0; r < count; r++)
+        {
+            int y = runs[3 * r] + dy;
+            int start = Math.max(0, runs[3 * r + 1] + dx);
+            int end = Math.min(width - 1, runs[3 * r + 2] + dx);
+            if(y < 0 || y >= height || start > end)
+                continue;
+            int row = y * words;
+            int first = start >>> 6;
+            int last = end >>> 6;
+            long head = -1L << start;
+            long tail = -1L >>> (63 - (end & 63));
+            if(first == last)
+                bits[row + first] |= head & tail;
+            else
+            {
+                bits[row + first] |= head;
+                for(int i = first + 1; i < last; i++)
+                    bits[row + i] = -1L;
+                bits[row + last] |= tail;
+            }
+        }
+    }
+
+    static int nextSet(long[] bits, int base, int words, int from)
+    {
+        int i = from >>> 6;
+        if(i >= words)
+            return -1;
+        long word = bits[base + i] & (-1L << from);
+        while(word == 0)
+        {
+            if(++i == words)
+                return -1;
+            word = bits[base + i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    static int nextClear(long[] bits, int base, int words, int from)
+    {
+        int i = from >>> 6;
+        if(i >= words)
+            return words << 6;
+        long word = ~bits[base + i] & (-1L << from);
+        while(word == 0)
+        {
+            if(++i == words)
+                return words << 6;
+            word = ~bits[base + i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+}
@@ -0,0 +1,109 @@
+package gameoflife;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class SoupCensus
+{
+    private static final int MAX_RECORDED_SEEDS = 16;
+
+    private final Map<String, Tally> tallies = new HashMap<>();
+    private final List<Long> unstabilizedSeeds = new ArrayList<>();
+    private long soups;
+    private long unstabilized;
+    private long generations;
+
+    public void count(String name, int cells, long seed)
+    {
+        Tally tally = tallies.get(name);
+        if(tally == null)
+        {
+            tally = new Tally(name, cells, seed);
+            tallies.put(name, tally);
+        }
+        tally.count++;
+    }
+
+    public void addSoup(long generations)
+    {
+        soups++;
+        this.generations += generations;
+    }
+
+    public void addUnstabilized(long seed)
+    {
+        unstabilized++;
+        if(unstabilizedSeeds.size() < MAX_RECORDED_SEEDS)
+            unstabilizedSeeds.add(seed);
+    }
+
+    public long getSoups()
+    {
+        return soups;
+    }
+
+    public void merge(SoupCensus other)
+    {
+        soups += other.soups;
+        generations += other.generations;
+        unstabilized += other.unstabilized;
+        for(long seed : other.unstabilizedSeeds)
+            if(unstabilizedSeeds.size() < MAX_RECORDED_SEEDS)
+                unstabilizedSeeds.add(seed);
+        for(Tally theirs : other.tallies.values())
+        {
+            Tally tally = tallies.get(theirs.name);
+            if(tally == null)
+            {
+                tally = new Tally(theirs.name, theirs.cells, theirs.firstSeed);
+                tallies.put(theirs.name, tally);
+            }
+            tally.count += theirs.count;
+            tally.firstSeed = Math.min(tally.firstSeed, theirs.firstSeed);
+        }
+    }
+
+    public void print(PrintStream out, int limit)
+    {
+        List<Tally> sorted = new ArrayList<>(tallies.values());
+        Collections.sort(sorted, new Comparator<Tally>()
+        {
+            @Override
+            public int compare(Tally a, Tally b)
+            {
+                return a.count != b.count ? Long.compare(b.count, a.count) : a.name.compareTo(b.name);
+            }
+        });
+        out.printf("%d soups, %.1f generations per soup on average%n", soups, soups == 0 ? 0.0 : (double) generations / soups);
+        if(unstabilized > 0)
+            out.println(unstabilized + " soups did not stabilize, e.g. seeds " + unstabilizedSeeds);
+        out.printf("%12s  %-24s %6s  %s%n", "Count", "Object", "Cells", "First seed");
+        for(int i = 0; i < sorted.size() && i < limit; i++)
+        {
+            Tally tally = sorted.get(i);
+            out.printf("%12d  %-24s %6d  %d%n", tally.count, tally.name, tally.cells, tally.firstSeed);
+        }
+        if(sorted.size() > limit)
+            out.println("... and " + (sorted.size() - limit) + " rarer objects");
+    }
+
+    private static class Tally
+    {
+        final String name;
+        final int cells;
+        long firstSeed;
+        long count;
+
+        Tally(String name, int cells, long firstSeed)
+        {
+            this.name = name;
+            this.cells = cells;
+            this.firstSeed = firstSeed;
+        }
+    }
+}
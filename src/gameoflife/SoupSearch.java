@@ -0,0 +1,377 @@
+package gameoflife;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+class SoupSearch
+{
+    public static final int DEFAULT_SOUP_SIDE = 16;
+    public static final int DEFAULT_UNIVERSE_SIDE = 128;
+    private static final int MARGIN = 8;
+    private static final int SWEEP_INTERVAL = 16;
+    private static final int GLIDER_CELLS = 5;
+    private static final Set<String> GLIDERS = gliderShapes();
+
+    private String engineName = StepEngines.BITBOARD;
+    private long soups = 100000;
+    private long firstSeed = 0;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int universeSide = DEFAULT_UNIVERSE_SIDE;
+    private int soupSide = DEFAULT_SOUP_SIDE;
+    private long maxGenerations = 20000;
+    private Rule rule = Rule.CONWAY;
+    private int reportLimit = 40;
+    private final AtomicLong nextSoup = new AtomicLong();
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        SoupSearch search = new SoupSearch();
+        try
+        {
+            search.parse(args);
+        } catch(IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+        try
+        {
+            search.run();
+        } catch(InterruptedException | RuntimeException e)
+        {
+            System.err.println("Soup search failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage()
+    {
+        System.err.println("Usage: java -cp <classes> gameoflife.SoupSearch [options]");
+        System.err.println("  --soups <n>            number of soups to search (default 100000)");
+        System.err.println("  --seed <n>             seed of the first soup; soup i uses seed + i (default 0)");
+        System.err.println("  --threads <n>          worker threads (default: available processors)");
+        System.err.println("  --soup-size <n>        side of the random square (default " + DEFAULT_SOUP_SIDE + ")");
+        System.err.println("  --universe <n>         side of the dead-bordered universe each soup runs in (default " + DEFAULT_UNIVERSE_SIDE + ")");
+        System.err.println("  --max-generations <n>  give up on soups that have not stabilized by then (default 20000)");
+        System.err.println("  --engine <name>        a bounded engine, one of " + String.join(", ", StepEngines.getNames()));
+        System.err.println("  --rule <rulestring>    e.g. B3/S23, B36/S23");
+        System.err.println("  --report <n>           census lines to print (default 40)");
+    }
+
+    private void parse(String[] args)
+    {
+        for(int i = 0; i < args.length; i++)
+        {
+            String option = args[i];
+            if(i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch(option)
+            {
+                case "--soups":
+                    soups = Long.parseLong(value);
+                    break;
+                case "--seed":
+                    firstSeed = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    threads = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--soup-size":
+                    soupSide = Integer.parseInt(value);
+                    break;
+                case "--universe":
+                    universeSide = Integer.parseInt(value);
+                    break;
+                case "--max-generations":
+                    maxGenerations = Long.parseLong(value);
+                    break;
+                case "--engine":
+                    engineName = value;
+                    break;
+                case "--rule":
+                    rule = Rule.parse(value);
+                    break;
+                case "--report":
+                    reportLimit = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        checkSides(soupSide, universeSide);
+    }
+
+    private static void checkSides(int soupSide, int universeSide)
+    {
+        if(soupSide < 1 || universeSide < soupSide + 4 * MARGIN || universeSide > StepEngines.MAX_GRID_SIDE)
+            throw new IllegalArgumentException("The universe must be at least " + (4 * MARGIN) + " cells wider than the soup");
+    }
+
+    /**
+     * Fills a side x side square in the middle of the grid with the soup for the given seed. Soups depend only on
+     * the seed and side, so any soup found by a search can be recreated in the editor.
+     */
+    public static void placeSoup(StepEngine grid, long seed, int side)
+    {
+        int left = (grid.getWidth() - side) / 2;
+        int top = (grid.getHeight() - side) / 2;
+        long state = Zobrist.mix(seed);
+        long bits = 0;
+        for(int i = 0; i < side * side; i++)
+        {
+            if((i & 63) == 0)
+            {
+                state += 0x9E3779B97F4A7C15L;
+                bits = Zobrist.mix(state);
+            }
+            if((bits & 1) != 0)
+                grid.setLiving(left + i % side, top + i / side, true);
+            bits >>>= 1;
+        }
+    }
+
+    /**
+     * A soup together with the settings it was searched with, so that the editor can replay it exactly: the soup
+     * side, the side of the dead-bordered universe and the rule. Gliders are not removed at the margin, so the
+     * replay matches the search until the first glider reaches the border.
+     */
+    public static class Replay
+    {
+        private final long seed;
+        private final int soupSide;
+        private final int universeSide;
+        private final Rule rule;
+
+        public Replay(long seed, int soupSide, int universeSide, Rule rule)
+        {
+            checkSides(soupSide, universeSide);
+            if(rule.isGenerations())
+                throw new IllegalArgumentException("Soups cannot be censused under the multi-state rule " + rule);
+            this.seed = seed;
+            this.soupSide = soupSide;
+            this.universeSide = universeSide;
+            this.rule = rule;
+        }
+
+        /**
+         * Parses "seed [soup side [universe side [rule]]]", as printed by the search. Missing settings take the
+         * search's defaults.
+         */
+        public static Replay parse(String text)
+        {
+            String[] parts = text.trim().split("\\s+");
+            if(parts.length > 4)
+                throw new IllegalArgumentException("Expected seed [soup size [universe size [rule]]]: " + text);
+            return new Replay(Long.parseLong(parts[0]),
+                    parts.length > 1 ? Integer.parseInt(parts[1]) : DEFAULT_SOUP_SIDE,
+                    parts.length > 2 ? Integer.parseInt(parts[2]) : DEFAULT_UNIVERSE_SIDE,
+                    parts.length > 3 ? Rule.parse(parts[3]) : Rule.CONWAY);
+        }
+
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        public int getSoupSide()
+        {
+            return soupSide;
+        }
+
+        public int getUniverseSide()
+        {
+            return universeSide;
+        }
+
+        public Rule getRule()
+        {
+            return rule;
+        }
+
+        @Override
+        public String toString()
+        {
+            return seed + " " + soupSide + " " + universeSide + " " + rule;
+        }
+    }
+
+    private static Set<String> gliderShapes()
+    {
+        Set<String> shapes = new HashSet<>();
+        ObjectClassifier classifier = new ObjectClassifier(new PatternLibrary());
+        BitboardEngine grid = new BitboardEngine();
+        grid.resize(16, 16);
+        grid.setParallelism(1);
+        grid.setBoundary(Boundary.DEAD);
+        PatternLibrary.builtIn().get("Glider").place(grid);
+        for(int phase = 0; phase < 4; phase++)
+        {
+            shapes.add(classifier.classify(grid).get(0).getShape());
+            grid.step();
+        }
+        return shapes;
+    }
+
+    private void run() throws InterruptedException
+    {
+        StepEngine probe = StepEngines.create(engineName);
+        if(!probe.isBounded() || !probe.supports(Boundary.DEAD))
+            throw new IllegalArgumentException(probe.getName() + " engine cannot run soups in a dead-bordered universe");
+        if(!probe.supports(rule))
+            throw new IllegalArgumentException(probe.getName() + " engine does not support " + rule);
+        if(rule.isGenerations())
+            throw new IllegalArgumentException("Soups cannot be censused under the multi-state rule " + rule);
+        probe.dispose();
+
+        System.out.println("Searching " + soups + " " + soupSide + "x" + soupSide + " soups from seed " + firstSeed + " in "
+                + universeSide + "x" + universeSide + " universes on " + engineName + " with " + threads + " thread(s), rule " + rule);
+        SoupCensus[] censuses = new SoupCensus[threads];
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for(int i = 0; i < threads; i++)
+        {
+            SoupCensus census = new SoupCensus();
+            censuses[i] = census;
+            workers[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    search(census);
+                }
+            }, "soup-search-" + i);
+            workers[i].start();
+        }
+        for(Thread worker : workers)
+        {
+            while(worker.isAlive())
+            {
+                worker.join(10000);
+                long done = Math.min(nextSoup.get(), soups);
+                if(worker.isAlive())
+                    System.out.printf("%d soups, %.1f soups/s%n", done, done / ((System.nanoTime() - start) / 1e9));
+            }
+        }
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        SoupCensus total = new SoupCensus();
+        for(SoupCensus census : censuses)
+            total.merge(census);
+        total.print(System.out, reportLimit);
+        System.out.printf("%.3f s, %.1f soups/s%n", seconds, total.getSoups() / seconds);
+        System.out.println("Replay a soup with Random Soup in the editor as \"<seed> " + soupSide + " " + universeSide + " " + rule + "\"");
+    }
+
+    private void search(SoupCensus census)
+    {
+        StepEngine grid = StepEngines.create(engineName);
+        grid.resize(universeSide, universeSide);
+        grid.setParallelism(1);
+        grid.setRule(rule);
+        grid.setBoundary(Boundary.DEAD);
+        CycleDetector detector = new CycleDetector();
+        ObjectClassifier classifier = new ObjectClassifier(PatternLibrary.builtIn());
+        classifier.setParallelism(1);
+        for(long index = nextSoup.getAndIncrement(); index < soups; index = nextSoup.getAndIncrement())
+        {
+            long seed = firstSeed + index;
+            grid.clear();
+            placeSoup(grid, seed, soupSide);
+            detector.reset();
+            long generation = 0;
+            while(generation < maxGenerations && !detector.isStable())
+            {
+                detector.step(grid, generation++);
+                if(generation % SWEEP_INTERVAL == 0 && removeGliders(grid, census, seed))
+                    detector.reset();
+            }
+            census.addSoup(generation);
+            if(!detector.isStable())
+            {
+                census.addUnstabilized(seed);
+                continue;
+            }
+            for(ObjectClassifier.DetectedObject object : classifier.classify(grid, detector.getPeriod()))
+                census.count(object.getLabel(), object.getPopulation(), seed);
+        }
+        grid.dispose();
+    }
+
+    /**
+     * Counts and deletes gliders that have reached the margin, before they hit the dead border and turn into debris.
+     * The sweep interval is short enough that a glider cannot cross the margin between two sweeps.
+     */
+    private boolean removeGliders(StepEngine grid, SoupCensus census, long seed)
+    {
+        LongHashSet border = new LongHashSet();
+        CellVisitor collector = new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                border.add(LongHashSet.pack(x, y));
+            }
+        };
+        int last = universeSide - 1;
+        grid.forEachLiving(0, 0, last, MARGIN - 1, collector);
+        grid.forEachLiving(0, last - MARGIN + 1, last, last, collector);
+        grid.forEachLiving(0, MARGIN, MARGIN - 1, last - MARGIN, collector);
+        grid.forEachLiving(last - MARGIN + 1, MARGIN, last, last - MARGIN, collector);
+        if(border.size() == 0)
+            return false;
+        boolean removed = false;
+        for(long start : border.rawKeys().clone())
+        {
+            if(start == LongHashSet.EMPTY || !grid.isLiving(LongHashSet.unpackX(start), LongHashSet.unpackY(start)))
+                continue;
+            long[] object = smallObject(grid, start);
+            if(object == null || object.length != GLIDER_CELLS)
+                continue;
+            if(!GLIDERS.contains(ObjectClassifier.canonical(object)))
+                continue;
+            census.count("Glider", GLIDER_CELLS, seed);
+            for(long cell : object)
+                grid.setLiving(LongHashSet.unpackX(cell), LongHashSet.unpackY(cell), false);
+            removed = true;
+        }
+        return removed;
+    }
+
+    /**
+     * Flood-fills the object containing the start cell, or returns null once it grows past glider size.
+     */
+    private long[] smallObject(StepEngine grid, long start)
+    {
+        long[] object = new long[GLIDER_CELLS];
+        int size = 0;
+        object[size++] = start;
+        for(int i = 0; i < size; i++)
+        {
+            int x = LongHashSet.unpackX(object[i]);
+            int y = LongHashSet.unpackY(object[i]);
+            for(int dy = -1; dy <= 1; dy++)
+            {
+                for(int dx = -1; dx <= 1; dx++)
+                {
+                    int nx = x + dx;
+                    int ny = y + dy;
+                    if(nx < 0 || ny < 0 || nx >= universeSide || ny >= universeSide || !grid.isLiving(nx, ny))
+                        continue;
+                    long cell = LongHashSet.pack(nx, ny);
+                    boolean seen = false;
+                    for(int j = 0; j < size && !seen; j++)
+                        seen = object[j] == cell;
+                    if(seen)
+                        continue;
+                    if(size == GLIDER_CELLS)
+                        return null;
+                    object[size++] = cell;
+                }
+            }
+        }
+        return size == GLIDER_CELLS ? object : null;
+    }
+}
@@ -0,0 +1,126 @@
+package gameoflife;
+
+class SparseEngine implements StepEngine
+{
+    private static final int LIVING = 16;
+
+    private int width;
+    private int height;
+    private LongHashSet cells = new LongHashSet();
+    private LongIntMap counts = new LongIntMap(16);
+    private Rule rule = Rule.CONWAY;
+    private byte[] table = rule.twoStateTable();
+
+    @Override
+    public String getName()
+    {
+        return StepEngines.SPARSE;
+    }
+
+    @Override
+    public void resize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        clear();
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public boolean isBounded()
+    {
+        return false;
+    }
+
+    @Override
+    public void clear()
+    {
+        cells = new LongHashSet();
+    }
+
+    @Override
+    public boolean isLiving(int x, int y)
+    {
+        return cells.contains(LongHashSet.pack(x, y));
+    }
+
+    @Override
+    public void setLiving(int x, int y, boolean living)
+    {
+        if(living)
+            cells.add(LongHashSet.pack(x, y));
+        else
+            cells.remove(LongHashSet.pack(x, y));
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if(!supports(rule))
+            throw new IllegalArgumentException(getName() + " engine does not support " + rule);
+        this.rule = rule;
+        table = rule.twoStateTable();
+    }
+
+    public int getPopulation()
+    {
+        return cells.size();
+    }
+
+    @Override
+    public void step()
+    {
+        if(counts.size() > 0)
+            counts.clear();
+        for(long key : cells.rawKeys())
+        {
+            if(key == LongHashSet.EMPTY)
+                continue;
+            int x = LongHashSet.unpackX(key);
+            int y = LongHashSet.unpackY(key);
+            counts.addTo(key, LIVING);
+            for(int dy = -1; dy <= 1; dy++)
+                for(int dx = -1; dx <= 1; dx++)
+                    if(dx != 0 || dy != 0)
+                        counts.addTo(LongHashSet.pack(x + dx, y + dy), 1);
+        }
+        LongHashSet next = new LongHashSet(cells.size());
+        long[] keys = counts.rawKeys();
+        int[] values = counts.rawValues();
+        for(int i = 0; i < keys.length; i++)
+            if(keys[i] != LongHashSet.EMPTY && table[values[i]] != 0)
+                next.add(keys[i]);
+        cells = next;
+    }
+
+    @Override
+    public void forEachLiving(int minX, int minY, int maxX, int maxY, CellVisitor visitor)
+    {
+        for(long key : cells.rawKeys())
+        {
+            if(key == LongHashSet.EMPTY)
+                continue;
+            int x = LongHashSet.unpackX(key);
+            int y = LongHashSet.unpackY(key);
+            if(x >= minX && x <= maxX && y >= minY && y <= maxY)
+                visitor.visit(x, y);
+        }
+    }
+}
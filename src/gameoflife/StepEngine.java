@@ -0,0 +1,171 @@
+package gameoflife;
+
+import java.util.Arrays;
+
+interface StepEngine
+{
+    String getName();
+
+    void resize(int width, int height);
+
+    int getWidth();
+
+    int getHeight();
+
+    void clear();
+
+    boolean isLiving(int x, int y);
+
+    void setLiving(int x, int y, boolean living);
+
+    void step();
+
+    default void dispose() {}
+
+    Rule getRule();
+
+    void setRule(Rule rule);
+
+    default boolean supports(Rule rule)
+    {
+        return !rule.isGenerations() && (isBounded() || !rule.bornFromNothing());
+    }
+
+    default Boundary getBoundary()
+    {
+        return Boundary.TORUS;
+    }
+
+    default void setBoundary(Boundary boundary) {}
+
+    default boolean supports(Boundary boundary)
+    {
+        return boundary == Boundary.TORUS;
+    }
+
+    default boolean isBounded()
+    {
+        return true;
+    }
+
+    /**
+     * Tells the engine which generation the universe is at, for engines that store it with their state. Called after
+     * every step and whenever the generation is set, since steps taken outside the engine do not advance its count.
+     */
+    default void setGeneration(long generation) {}
+
+    default int getStepExponent()
+    {
+        return 0;
+    }
+
+    default void setStepExponent(int stepExponent) {}
+
+    default int getParallelism()
+    {
+        return 1;
+    }
+
+    default void setParallelism(int parallelism) {}
+
+    default long getStateHash()
+    {
+        return Zobrist.hash(this);
+    }
+
+    default GenerationStats getGenerationStats(long generation)
+    {
+        return GenerationStats.scan(this, generation);
+    }
+
+    default String getStatistics()
+    {
+        return null;
+    }
+
+    /**
+     * Copies a bounded universe into out as (width + 63) / 64 words per row, bit x of a word holding column x.
+     */
+    default void readBitmap(long[] out)
+    {
+        int words = (getWidth() + 63) >>> 6;
+        Arrays.fill(out, 0L);
+        forEachLiving(0, 0, getWidth() - 1, getHeight() - 1, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                out[y * words + (x >>> 6)] |= 1L << x;
+            }
+        });
+    }
+
+    default void writeBitmap(long[] bits)
+    {
+        int words = (getWidth() + 63) >>> 6;
+        clear();
+        for(int y = 0; y < getHeight(); y++)
+        {
+            for(int i = 0; i < words; i++)
+            {
+                long word = bits[y * words + i];
+                while(word != 0)
+                {
+                    setLiving((i << 6) + Long.numberOfTrailingZeros(word), y, true);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies row y of a bounded universe into the first (width + 63) / 64 words of row, laid out as in readBitmap.
+     */
+    default void readRow(int y, long[] row)
+    {
+        Arrays.fill(row, 0, (getWidth() + 63) >>> 6, 0L);
+        forEachLiving(0, y, getWidth() - 1, y, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                row[x >>> 6] |= 1L << x;
+            }
+        });
+    }
+
+    /**
+     * Replaces row y of a bounded universe with the first (width + 63) / 64 words of row. Engines that keep rows of
+     * words copy them in; the others set the cells that change one by one.
+     */
+    default void writeRow(int y, long[] row)
+    {
+        for(int x = 0; x < getWidth(); x++)
+        {
+            boolean living = (row[x >>> 6] & (1L << x)) != 0;
+            if(isLiving(x, y) != living)
+                setLiving(x, y, living);
+        }
+    }
+
+    /**
+     * Returns true if readRow and writeRow copy words rather than visiting cells, so that writing a few rows costs
+     * no more than their width in words.
+     */
+    default boolean hasRowStorage()
+    {
+        return false;
+    }
+
+    default void forEachLiving(int minX, int minY, int maxX, int maxY, CellVisitor visitor)
+    {
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        maxX = Math.min(maxX, getWidth() - 1);
+        maxY = Math.min(maxY, getHeight() - 1);
+        for(int y = minY; y <= maxY; y++)
+            for(int x = minX; x <= maxX; x++)
+                if(isLiving(x, y))
+                    visitor.visit(x, y);
+    }
+}
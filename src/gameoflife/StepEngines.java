@@ -0,0 +1,69 @@
+package gameoflife;
+
+class StepEngines
+{
+    public static final String BITBOARD = "Bitboard";
+    public static final String BYTE = "Byte";
+    public static final String HASHLIFE = "HashLife";
+    public static final String SPARSE = "Sparse";
+    public static final String CHUNKED = "Chunked";
+    public static final String VECTOR = "Vector";
+    public static final String LOOKUP = "Lookup Table";
+    public static final String GENERATIONS = "Generations";
+    public static final String OFF_HEAP = "Off-Heap";
+    public static final String MAPPED = "Mapped";
+
+    public static final int MAX_GRID_SIDE = 65536;
+
+    private static final String[] ALL_ENGINES = {BITBOARD, BYTE, HASHLIFE, SPARSE, CHUNKED, VECTOR, LOOKUP, GENERATIONS, OFF_HEAP, MAPPED};
+
+    private StepEngines() {}
+
+    public static String[] getNames()
+    {
+        return ALL_ENGINES;
+    }
+
+    public static StepEngine create(String name)
+    {
+        switch(name)
+        {
+            case BYTE:
+                return new ByteEngine();
+            case HASHLIFE:
+                return new HashLifeEngine();
+            case SPARSE:
+                return new SparseEngine();
+            case CHUNKED:
+                return new ChunkedEngine();
+            case VECTOR:
+                return VectorSupport.createEngine();
+            case LOOKUP:
+                return new LookupTableEngine();
+            case GENERATIONS:
+                return new GenerationsEngine();
+            case OFF_HEAP:
+                return new OffHeapEngine();
+            case MAPPED:
+                return new MappedEngine();
+            case BITBOARD:
+                return new BitboardEngine();
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+    }
+
+    public static void copy(StepEngine from, StepEngine to)
+    {
+        to.resize(from.getWidth(), from.getHeight());
+        from.forEachLiving(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                if(!to.isBounded() || (x >= 0 && x < to.getWidth() && y >= 0 && y < to.getHeight()))
+                    to.setLiving(x, y, true);
+            }
+        });
+    }
+}
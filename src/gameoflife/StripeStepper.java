@@ -0,0 +1,76 @@
+package gameoflife;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class StripeStepper
+{
+    private static final int MIN_STRIPE_ROWS = 16;
+    private static final Map<Integer, ForkJoinPool> POOLS = new HashMap<>();
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void run(int rows, RowKernel kernel)
+    {
+        if(parallelism == 1 || rows < MIN_STRIPE_ROWS * 2)
+        {
+            kernel.stepRows(0, rows);
+            return;
+        }
+        int stripeRows = Math.max(MIN_STRIPE_ROWS, rows / (parallelism * 4));
+        getPool(parallelism).invoke(new Stripe(kernel, 0, rows, stripeRows));
+    }
+
+    private static synchronized ForkJoinPool getPool(int parallelism)
+    {
+        ForkJoinPool pool = POOLS.get(parallelism);
+        if(pool == null)
+        {
+            pool = new ForkJoinPool(parallelism);
+            POOLS.put(parallelism, pool);
+        }
+        return pool;
+    }
+
+    private static class Stripe extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final RowKernel kernel;
+        private final int from;
+        private final int to;
+        private final int stripeRows;
+
+        Stripe(RowKernel kernel, int from, int to, int stripeRows)
+        {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.stripeRows = stripeRows;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= stripeRows)
+            {
+                kernel.stepRows(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Stripe(kernel, from, middle, stripeRows), new Stripe(kernel, middle, to, stripeRows));
+        }
+    }
+}
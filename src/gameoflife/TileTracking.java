@@ -0,0 +1,12 @@
+package gameoflife;
+
+interface TileTracking
+{
+    boolean isTileTracking();
+
+    void setTileTracking(boolean tileTracking);
+
+    int getTilesComputed();
+
+    int getTilesSkipped();
+}
@@ -0,0 +1,439 @@
+package gameoflife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A saved universe. The binary format starts with a header holding the size, origin, rule and generation, followed by
+ * a body that is either the bit-packed rows or the horizontal runs of living cells as varints, whichever is smaller,
+ * deflated when that helps. Files are read and written through buffered file channels. The old text format, a
+ * generation followed by one "x,y" line per living cell, is still read, and is still written for .txt files.
+ */
+class UniverseFile
+{
+    public static final String EXTENSION = "gol";
+
+    private static final int MAGIC = 0x474F4C55;
+    private static final int VERSION = 1;
+    private static final byte BITMAP = 0;
+    private static final byte RUNS = 1;
+    private static final int DEFLATED = 1;
+    private static final int BOUNDED = 2;
+    private static final int MIN_DEFLATE_BYTES = 256;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final long generation;
+    private final Rule rule;
+    private final boolean bounded;
+    private final int originX;
+    private final int originY;
+    private final int width;
+    private final int height;
+    private final long[] bits;
+    private final RunList runs;
+
+    private UniverseFile(long generation, Rule rule, boolean bounded, int originX, int originY, int width, int height, long[] bits, RunList runs)
+    {
+        this.generation = generation;
+        this.rule = rule;
+        this.bounded = bounded;
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+        this.bits = bits;
+        this.runs = runs;
+    }
+
+    /**
+     * Reads a universe in either format, telling them apart by the magic number.
+     */
+    public static UniverseFile load(File file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while(magic.hasRemaining() && channel.read(magic) >= 0) {}
+            channel.position(0);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            if(magic.position() == 4 && magic.getInt(0) == MAGIC)
+                return loadBinary(new DataInputStream(in));
+            return loadText(in);
+        }
+    }
+
+    private static UniverseFile loadText(InputStream in)
+    {
+        long[] cells = new long[256];
+        int count = 0;
+        Scanner data = new Scanner(in);
+        long generation = data.nextLong();
+        while(data.hasNext())
+        {
+            String[] pos = data.next().split(",");
+            if(count == cells.length)
+                cells = Arrays.copyOf(cells, count * 2);
+            cells[count++] = RunList.sortKey(Integer.parseInt(pos[0]), Integer.parseInt(pos[1]));
+        }
+        RunList runs = RunList.ofSorted(cells, count);
+        int maxX = Math.max(-1, runs.getMaxX());
+        int maxY = Math.max(-1, runs.getMaxY());
+        return new UniverseFile(generation, null, false, 0, 0, maxX + 1, maxY + 1, null, runs);
+    }
+
+    private static UniverseFile loadBinary(DataInputStream header) throws IOException
+    {
+        header.readInt();
+        int version = header.readInt();
+        if(version != VERSION)
+            throw new IOException("Unsupported universe file version " + version);
+        byte encoding = header.readByte();
+        int flags = header.readByte();
+        int originX = header.readInt();
+        int originY = header.readInt();
+        int width = header.readInt();
+        int height = header.readInt();
+        long generation = header.readLong();
+        Rule rule = Rule.parse(header.readUTF());
+        if(width < 0 || height < 0)
+            throw new IOException("Invalid universe size " + width + "x" + height);
+        DataInputStream in = (flags & DEFLATED) != 0 ? new DataInputStream(new BufferedInputStream(new InflaterInputStream(header), BUFFER_SIZE)) : header;
+        boolean bounded = (flags & BOUNDED) != 0;
+        if(encoding == BITMAP)
+        {
+            long[] bits = new long[((width + 63) >>> 6) * height];
+            byte[] chunk = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            for(int i = 0; i < bits.length; )
+            {
+                int words = Math.min(bits.length - i, chunk.length >>> 3);
+                in.readFully(chunk, 0, words << 3);
+                buffer.clear();
+                buffer.asLongBuffer().get(bits, i, words);
+                i += words;
+            }
+            return new UniverseFile(generation, rule, bounded, originX, originY, width, height, bits, null);
+        }
+        if(encoding != RUNS)
+            throw new IOException("Unknown universe encoding " + encoding);
+        RunList runs = new RunList();
+        int y = -1;
+        while(true)
+        {
+            y += readVarint(in) + 1;
+            int spans = readVarint(in);
+            if(spans == 0)
+                break;
+            int x = 0;
+            for(int s = 0; s < spans; s++)
+            {
+                x += readVarint(in);
+                int length = readVarint(in);
+                if(y >= height || length < 1 || x + length > width)
+                    throw new IOException("Run outside the universe at row " + y);
+                runs.addRun(y, x, x + length - 1);
+                x += length;
+            }
+        }
+        return new UniverseFile(generation, rule, bounded, originX, originY, width, height, null, runs);
+    }
+
+    /**
+     * Writes the grid in the text format if the file name ends in .txt, and in the binary format otherwise.
+     */
+    public static void save(File file, StepEngine grid, long generation) throws IOException
+    {
+        if(file.getName().toLowerCase().endsWith(".txt"))
+            saveText(file, grid, generation);
+        else
+            saveBinary(file, grid, generation);
+    }
+
+    private static void saveText(File file, StepEngine grid, long generation) throws IOException
+    {
+        try(BufferedWriter save = new BufferedWriter(new FileWriter(file)))
+        {
+            save.write(generation + "\n");
+            IOException[] error = new IOException[1];
+            grid.forEachLiving(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, new CellVisitor()
+            {
+                @Override
+                public void visit(int x, int y)
+                {
+                    try
+                    {
+                        save.write(x + "," + y + "\n");
+                    } catch(IOException e)
+                    {
+                        error[0] = e;
+                    }
+                }
+            });
+            if(error[0] != null)
+                throw error[0];
+        }
+    }
+
+    private static void saveBinary(File file, StepEngine grid, long generation) throws IOException
+    {
+        int originX = 0, originY = 0, width = grid.getWidth(), height = grid.getHeight();
+        long[] bits = null;
+        VarintBuffer body;
+        if(grid.isBounded())
+        {
+            bits = new long[((width + 63) >>> 6) * height];
+            grid.readBitmap(bits);
+            body = encodeRuns(bits, width, height, bits.length * 8L);
+        } else
+        {
+            RunList runs = RunList.of(grid);
+            if(runs.count > 0)
+            {
+                originX = runs.getMinX();
+                originY = runs.getMinY();
+                width = runs.getMaxX() - originX + 1;
+                height = runs.getMaxY() - originY + 1;
+            } else
+            {
+                width = 0;
+                height = 0;
+            }
+            body = encodeRuns(runs, originX, originY);
+            if((long) ((width + 63) >>> 6) * height * 8 < body.length)
+            {
+                bits = new long[((width + 63) >>> 6) * height];
+                runs.orInto(bits, width, height, -originX, -originY);
+            }
+        }
+        boolean bitmap = body == null || bits != null && bits.length * 8L <= body.length;
+        long bodyBytes = bitmap ? bits.length * 8L : body.length;
+        int flags = (grid.isBounded() ? BOUNDED : 0) | (bodyBytes >= MIN_DEFLATE_BYTES ? DEFLATED : 0);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            DataOutputStream header = new DataOutputStream(stream);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeByte(bitmap ? BITMAP : RUNS);
+            header.writeByte(flags);
+            header.writeInt(originX);
+            header.writeInt(originY);
+            header.writeInt(width);
+            header.writeInt(height);
+            header.writeLong(generation);
+            header.writeUTF(grid.getRule().toString());
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            DeflaterOutputStream deflated = null;
+            OutputStream out = header;
+            if((flags & DEFLATED) != 0)
+            {
+                deflated = new DeflaterOutputStream(header, deflater, BUFFER_SIZE);
+                out = deflated;
+            }
+            if(bitmap)
+            {
+                byte[] chunk = new byte[BUFFER_SIZE];
+                ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                for(int i = 0; i < bits.length; )
+                {
+                    int words = Math.min(bits.length - i, chunk.length >>> 3);
+                    buffer.clear();
+                    buffer.asLongBuffer().put(bits, i, words);
+                    out.write(chunk, 0, words << 3);
+                    i += words;
+                }
+            } else
+                out.write(body.bytes, 0, body.length);
+            if(deflated != null)
+                deflated.finish();
+            deflater.end();
+            header.flush();
+        }
+    }
+
+    /**
+     * Encodes the runs of a bitmap, giving up and returning null once the encoding grows past the given limit.
+     */
+    private static VarintBuffer encodeRuns(long[] bits, int width, int height, long limit)
+    {
+        int words = (width + 63) >>> 6;
+        VarintBuffer out = new VarintBuffer();
+        RunList row = new RunList();
+        int lastY = -1;
+        for(int y = 0; y < height; y++)
+        {
+            row.count = 0;
+            int base = y * words;
+            int x = RunList.nextSet(bits, base, words, 0);
+            while(x >= 0)
+            {
+                int end = RunList.nextClear(bits, base, words, x);
+                row.addRun(y, x, end - 1);
+                x = RunList.nextSet(bits, base, words, end);
+            }
+            if(row.count == 0)
+                continue;
+            writeRow(out, row, y - lastY - 1, 0);
+            lastY = y;
+            if(out.length > limit)
+                return null;
+        }
+        out.write(0);
+        out.write(0);
+        return out;
+    }
+
+    private static VarintBuffer encodeRuns(RunList runs, int originX, int originY)
+    {
+        VarintBuffer out = new VarintBuffer();
+        RunList row = new RunList();
+        int lastY = -1;
+        for(int r = 0; r < runs.count; )
+        {
+            int y = runs.runs[3 * r];
+            row.count = 0;
+            for(; r < runs.count && runs.runs[3 * r] == y; r++)
+                row.addRun(y - originY, runs.runs[3 * r + 1] - originX, runs.runs[3 * r + 2] - originX);
+            writeRow(out, row, y - originY - lastY - 1, 0);
+            lastY = y - originY;
+        }
+        out.write(0);
+        out.write(0);
+        return out;
+    }
+
+    private static void writeRow(VarintBuffer out, RunList row, int skipped, int x)
+    {
+        out.write(skipped);
+        out.write(row.count);
+        for(int r = 0; r < row.count; r++)
+        {
+            int start = row.runs[3 * r + 1];
+            int end = row.runs[3 * r + 2];
+            out.write(start - x);
+            out.write(end - start + 1);
+            x = end + 1;
+        }
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Replaces the contents of the grid with this universe. A bounded grid of the saved size gets the bitmap in one
+     * copy; any other grid is filled cell by cell.
+     */
+    public void placeInto(StepEngine grid)
+    {
+        if(bounded && grid.isBounded() && grid.getWidth() == width && grid.getHeight() == height)
+        {
+            grid.writeBitmap(bits != null ? bits : toBitmap());
+            return;
+        }
+        grid.clear();
+        if(bits != null)
+        {
+            int words = (width + 63) >>> 6;
+            for(int y = 0; y < height; y++)
+            {
+                for(int i = 0; i < words; i++)
+                {
+                    long word = bits[y * words + i];
+                    while(word != 0)
+                    {
+                        grid.setLiving(originX + (i << 6) + Long.numberOfTrailingZeros(word), originY + y, true);
+                        word &= word - 1;
+                    }
+                }
+            }
+        } else
+        {
+            for(int r = 0; r < runs.count; r++)
+                for(int x = runs.runs[3 * r + 1]; x <= runs.runs[3 * r + 2]; x++)
+                    grid.setLiving(originX + x, originY + runs.runs[3 * r], true);
+        }
+    }
+
+    private long[] toBitmap()
+    {
+        long[] bitmap = new long[((width + 63) >>> 6) * height];
+        runs.orInto(bitmap, width, height, 0, 0);
+        return bitmap;
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Returns the rule the universe was saved with, or null for the text format, which does not record one.
+     */
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    /**
+     * Returns true if the universe was saved from a bounded grid, so that its width and height are the grid's size.
+     */
+    public boolean isBounded()
+    {
+        return bounded;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    private static class VarintBuffer
+    {
+        byte[] bytes = new byte[256];
+        int length;
+
+        void write(int value)
+        {
+            if(length + 5 > bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while((value & ~0x7f) != 0)
+            {
+                bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package gameoflife;
+
+import java.util.Random;
+
+class VectorSupport
+{
+    private static final String MODULE = "jdk.incubator.vector";
+    private static final String ENGINE_CLASS = "gameoflife.VectorBitboardEngine";
+    private static final int VALIDATION_SIZE = 1024;
+    private static final int WARMUP_GENERATIONS = 32;
+    private static final int VALIDATION_GENERATIONS = 64;
+
+    private static Boolean validated;
+    private static String report;
+
+    private VectorSupport() {}
+
+    public static boolean isAvailable()
+    {
+        if(ModuleLayer.boot().findModule(MODULE).isEmpty())
+            return false;
+        try
+        {
+            Class.forName(ENGINE_CLASS);
+            return true;
+        } catch(ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    public static synchronized StepEngine createEngine()
+    {
+        if(!isAvailable())
+        {
+            System.err.println("Vector API not available (run with --add-modules " + MODULE + ") - using " + StepEngines.BITBOARD + " engine");
+            return new BitboardEngine();
+        }
+        if(validated == null)
+            validated = validate();
+        if(!validated)
+        {
+            System.err.println((report == null ? "Vector engine failed validation" : "Vector engine is no faster (" + report + ")")
+                    + " - using " + StepEngines.BITBOARD + " engine");
+            return new BitboardEngine();
+        }
+        return newEngine();
+    }
+
+    /**
+     * Returns the outcome of validating the vector engine against the scalar engines, or null before validation.
+     */
+    public static synchronized String getValidationReport()
+    {
+        return report;
+    }
+
+    private static StepEngine newEngine()
+    {
+        try
+        {
+            return (StepEngine) Class.forName(ENGINE_CLASS).getDeclaredConstructor().newInstance();
+        } catch(ReflectiveOperationException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Steps the same soup on the vector, bitboard and byte engines, and accepts the vector engine only if it agrees
+     * with both and is faster than the bitboard engine it replaces.
+     */
+    private static boolean validate()
+    {
+        StepEngine vector = newEngine();
+        StepEngine bitboard = new BitboardEngine();
+        StepEngine bytes = new ByteEngine();
+        for(StepEngine engine : new StepEngine[]{vector, bitboard, bytes})
+        {
+            engine.setParallelism(1);
+            engine.resize(VALIDATION_SIZE, VALIDATION_SIZE);
+        }
+        Random random = new Random(VALIDATION_SIZE);
+        for(int y = 0; y < VALIDATION_SIZE; y++)
+        {
+            for(int x = 0; x < VALIDATION_SIZE; x++)
+            {
+                if(random.nextInt(10) < 3)
+                {
+                    vector.setLiving(x, y, true);
+                    bitboard.setLiving(x, y, true);
+                    bytes.setLiving(x, y, true);
+                }
+            }
+        }
+        long vectorTime = 0, bitboardTime = 0, byteTime = 0;
+        for(int i = 0; i < WARMUP_GENERATIONS + VALIDATION_GENERATIONS; i++)
+        {
+            if(i == WARMUP_GENERATIONS)
+                vectorTime = bitboardTime = byteTime = 0;
+            vectorTime += time(vector);
+            bitboardTime += time(bitboard);
+            byteTime += time(bytes);
+        }
+        for(int y = 0; y < VALIDATION_SIZE; y++)
+            for(int x = 0; x < VALIDATION_SIZE; x++)
+                if(vector.isLiving(x, y) != bytes.isLiving(x, y) || bitboard.isLiving(x, y) != bytes.isLiving(x, y))
+                    return false;
+        double speedup = (double) bitboardTime / vectorTime;
+        report = String.format("Vector engine validated over %d generations of a %dx%d soup: speedup %.2fx over %s, %.2fx over %s",
+                WARMUP_GENERATIONS + VALIDATION_GENERATIONS, VALIDATION_SIZE, VALIDATION_SIZE,
+                speedup, StepEngines.BITBOARD, (double) byteTime / vectorTime, StepEngines.BYTE);
+        return speedup >= 1;
+    }
+
+    private static long time(StepEngine engine)
+    {
+        long start = System.nanoTime();
+        engine.step();
+        return System.nanoTime() - start;
+    }
+}
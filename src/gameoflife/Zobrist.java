@@ -0,0 +1,32 @@
+package gameoflife;
+
+class Zobrist
+{
+    private Zobrist() {}
+
+    public static long key(int x, int y)
+    {
+        return mix(LongHashSet.pack(x, y) + 0x9E3779B97F4A7C15L);
+    }
+
+    public static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long hash(StepEngine engine)
+    {
+        long[] hash = new long[1];
+        engine.forEachLiving(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, new CellVisitor()
+        {
+            @Override
+            public void visit(int x, int y)
+            {
+                hash[0] ^= key(x, y);
+            }
+        });
+        return hash[0];
+    }
+}